@@ -2,8 +2,10 @@ package com.leelasowmya.topalbums;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling // Periodic jobs, e.g. flushing play counters
 public class AlbumApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,146 @@
+package com.leelasowmya.topalbums.bulkhead;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Concurrency limiter whose limit follows observed latency (a simplified "gradient" limiter)
+// - a slow moving average of response times is the baseline for "healthy" latency
+// - when recent requests get slower than the baseline, the limit shrinks in proportion
+// - when they're as fast as the baseline, the limit grows by roughly sqrt(limit) per sample
+// Requests over the limit can wait in a small bounded queue for maxWait; otherwise they're rejected straight away
+public class AdaptiveLimiter {
+    // Weight of each new sample in the long-term (baseline) latency average
+    private static final double LONG_RTT_ALPHA = 0.01;
+    // How much of each newly computed limit is applied at once, to avoid oscillating
+    private static final double SMOOTHING = 0.2;
+    // Latency may be this much above the baseline before the limit starts shrinking
+    private static final double TOLERANCE = 1.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    // All guarded by lock
+    private double limit;
+    private double longRttNanos;
+    private int inFlight;
+    private int waiting;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueue, long maxWait, TimeUnit unit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= maxLimit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    // Outcome of an acquire() call, so the caller can tell a queued request from one that got straight in
+    public enum Acquired { IMMEDIATE, AFTER_QUEUEING, REJECTED }
+
+    public Acquired acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return Acquired.IMMEDIATE;
+            }
+            if (waiting >= maxQueue || maxWaitNanos <= 0) {
+                return Acquired.REJECTED;
+            }
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return Acquired.REJECTED;
+                    }
+                    remaining = permitReleased.awaitNanos(remaining);
+                }
+                inFlight++;
+                return Acquired.AFTER_QUEUEING;
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Gives the slot back and feeds the request's latency into the limit calculation
+    // Failed requests (exceptions) don't update the limit - their timing says nothing about capacity
+    public void release(long rttNanos, boolean sample) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (sample && rttNanos > 0) {
+                onSample(rttNanos);
+            }
+            // One wake-up per slot that is now free: besides the one given back, a sample can raise the limit
+            // by several slots at once, and a single signal() would leave the other waiters asleep until maxWait
+            for (int free = (int) limit - inFlight; free > 0; free--) {
+                permitReleased.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onSample(long rttNanos) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            return;
+        }
+        longRttNanos = longRttNanos * (1 - LONG_RTT_ALPHA) + rttNanos * LONG_RTT_ALPHA;
+
+        // If latency has been high for long enough to drag the baseline up a lot, let the baseline recover
+        // faster so the limit doesn't stay stuck at the bottom after the overload is gone
+        if (longRttNanos / rttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+
+        // Only grow when the limit is actually being used; an idle limiter would otherwise creep up to maxLimit
+        if (newLimit > limit && inFlight < limit / 2) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
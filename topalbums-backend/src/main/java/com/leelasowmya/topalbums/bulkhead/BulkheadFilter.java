@@ -0,0 +1,97 @@
+package com.leelasowmya.topalbums.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+
+// Servlet filter that puts every /albums request through the limiter of its endpoint class
+// Runs before the DispatcherServlet, so a shed upload is rejected before its multipart body is parsed
+@Slf4j
+public class BulkheadFilter extends OncePerRequestFilter {
+    private final Map<EndpointClass, AdaptiveLimiter> limiters = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, BulkheadProperties.Limits> limits = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> queuedCounters = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> shedCounters = new EnumMap<>(EndpointClass.class);
+
+    public BulkheadFilter(BulkheadProperties properties, MeterRegistry meterRegistry) {
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            BulkheadProperties.Limits config = properties.limitsFor(endpointClass);
+            AdaptiveLimiter limiter = new AdaptiveLimiter(config.getInitialLimit(), config.getMinLimit(),
+                    config.getMaxLimit(), config.getMaxQueue(), config.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+            limiters.put(endpointClass, limiter);
+            limits.put(endpointClass, config);
+
+            String tag = endpointClass.name().toLowerCase();
+            Gauge.builder("albums.bulkhead.limit", limiter, AdaptiveLimiter::getLimit)
+                    .tag("endpoint", tag).register(meterRegistry);
+            Gauge.builder("albums.bulkhead.inflight", limiter, AdaptiveLimiter::getInFlight)
+                    .tag("endpoint", tag).register(meterRegistry);
+            Gauge.builder("albums.bulkhead.waiting", limiter, AdaptiveLimiter::getWaiting)
+                    .tag("endpoint", tag).register(meterRegistry);
+            queuedCounters.put(endpointClass, Counter.builder("albums.bulkhead.queued")
+                    .description("Requests that had to wait for a slot")
+                    .tag("endpoint", tag).register(meterRegistry));
+            shedCounters.put(endpointClass, Counter.builder("albums.bulkhead.shed")
+                    .description("Requests rejected because the bulkhead was saturated")
+                    .tag("endpoint", tag).register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointClass endpointClass = EndpointClass.classify(request);
+        if (endpointClass == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        AdaptiveLimiter limiter = limiters.get(endpointClass);
+        AdaptiveLimiter.Acquired acquired;
+        try {
+            acquired = limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = AdaptiveLimiter.Acquired.REJECTED;
+        }
+
+        if (acquired == AdaptiveLimiter.Acquired.REJECTED) {
+            shed(endpointClass, response);
+            return;
+        }
+        if (acquired == AdaptiveLimiter.Acquired.AFTER_QUEUEING) {
+            queuedCounters.get(endpointClass).increment();
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            chain.doFilter(request, response);
+            success = response.getStatus() < 500;
+        } finally {
+            limiter.release(System.nanoTime() - start, success);
+        }
+    }
+
+    // Fast rejection: no body parsing, no DB work - just a status and a hint for when to come back
+    private void shed(EndpointClass endpointClass, HttpServletResponse response) {
+        shedCounters.get(endpointClass).increment();
+        BulkheadProperties.Limits config = limits.get(endpointClass);
+        log.warn("Shedding {} request - bulkhead saturated (limit {})", endpointClass, limiters.get(endpointClass).getLimit());
+        response.setStatus(config.getRejectStatus());
+        response.setHeader(RETRY_AFTER, String.valueOf(Math.max(1, config.getRetryAfter().toSeconds())));
+    }
+}
@@ -0,0 +1,41 @@
+package com.leelasowmya.topalbums.bulkhead;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Binds the app.bulkhead.* settings from application.yml
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.bulkhead")
+public class BulkheadProperties {
+    // Turns the whole filter on/off (handy for load tests against an unprotected app)
+    private boolean enabled = true;
+
+    // One set of limits per endpoint class, e.g. app.bulkhead.limits.upload.max-limit=4
+    private Map<EndpointClass, Limits> limits = new EnumMap<>(EndpointClass.class);
+
+    public Limits limitsFor(EndpointClass endpointClass) {
+        return limits.getOrDefault(endpointClass, new Limits());
+    }
+
+    @Getter
+    @Setter
+    public static class Limits {
+        // Concurrency the limiter starts with before it has seen any latency samples
+        private int initialLimit = 20;
+        // The adaptive limit never goes outside [minLimit, maxLimit]; set them equal for a fixed limit
+        private int minLimit = 2;
+        private int maxLimit = 100;
+        // How many requests may wait for a slot, and for how long, before being shed
+        private int maxQueue = 0;
+        private Duration maxWait = Duration.ZERO;
+        // Status and Retry-After sent back when a request is shed (429 or 503)
+        private int rejectStatus = 503;
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+}
@@ -0,0 +1,41 @@
+package com.leelasowmya.topalbums.bulkhead;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+// Groups the album endpoints by how expensive they are, so each group gets its own concurrency limit
+// and a burst in one group (e.g. big cover uploads) can't take every Tomcat worker away from the others
+public enum EndpointClass {
+    UPLOAD,          // PUT /albums/{id}/image - streams up to max-file-size into the photo directory
+    IMAGE_READ,      // GET /albums/image/{filename} - reads a cover image from disk
+    METADATA_READ,   // GET /albums, GET /albums/{id}, GET /albums/changes - cheap, index-backed DB reads
+    WRITE,           // POST/PUT/DELETE on albums - DB writes
+    PLAY;            // POST /albums/{id}/plays - in-memory counter, kept apart so it can't skew the write limit
+
+    private static final String ALBUMS_PATH = "/albums";
+    private static final String IMAGE_PATH = "/albums/image/";
+    private static final String IMAGE_SUFFIX = "/image";
+    private static final String PLAYS_SUFFIX = "/plays";
+
+    // Works out which bulkhead a request belongs to from its method and path
+    // Returns null for anything outside /albums (actuator, error pages...) so those are never limited
+    public static EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(ALBUMS_PATH)) {
+            return null;
+        }
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return path.startsWith(IMAGE_PATH) ? IMAGE_READ : METADATA_READ;
+        }
+        if ("OPTIONS".equals(method)) {
+            return null; // CORS preflight - no work behind it
+        }
+        if ("PUT".equals(method) && path.endsWith(IMAGE_SUFFIX)) {
+            return UPLOAD;
+        }
+        if ("POST".equals(method) && path.endsWith(PLAYS_SUFFIX)) {
+            return PLAY;
+        }
+        return WRITE;
+    }
+}
@@ -0,0 +1,134 @@
+package com.leelasowmya.topalbums.cache;
+
+import com.leelasowmya.topalbums.domain.Album;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Node-local cache of Album lookups (GET /albums/{id}), bounded by number of entries, least recently used out
+// Kept coherent across nodes by CacheInvalidationBus (LISTEN/NOTIFY) with AlbumCacheVersionCheck as a safety net
+// Holds detached copies, so nothing a request does to its own entity can leak into the cache
+@Component
+public class AlbumCache {
+    private final int maxEntries;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Album> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Bumped on every invalidation; a load that started before one can't put its (possibly stale) row in
+    private long generation;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public AlbumCache(@Value("${app.album-cache.max-entries:10000}") int maxEntries, MeterRegistry meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("albums.album.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("albums.album.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("albums.album.cache.size", this, AlbumCache::size).register(meterRegistry);
+    }
+
+    public Album get(String id) {
+        lock.lock();
+        try {
+            Album album = entries.get(id);
+            (album == null ? misses : hits).increment();
+            return album;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Token to pass to put() - taken before loading the album from the database
+    public long currentGeneration() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caches a copy of the album unless something was invalidated since loadGeneration was taken
+    public void put(Album album, long loadGeneration) {
+        Album copy = album.toBuilder().build();
+        lock.lock();
+        try {
+            if (loadGeneration != generation) {
+                return;
+            }
+            entries.put(copy.getId(), copy);
+            if (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(String id) {
+        lock.lock();
+        try {
+            generation++;
+            entries.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Snapshot of (id -> cached version) for the version check
+    public Map<String, Long> cachedVersions() {
+        lock.lock();
+        try {
+            Map<String, Long> versions = new LinkedHashMap<>();
+            entries.forEach((id, album) -> versions.put(id, album.getVersion()));
+            return versions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Evicts an entry only if it still holds the given version (a newer one may have been cached meanwhile)
+    public void invalidateIfVersion(String id, Long version) {
+        lock.lock();
+        try {
+            Album album = entries.get(id);
+            if (album != null && Objects.equals(album.getVersion(), version)) {
+                generation++;
+                entries.remove(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Max number of albums held - lets bulk warm-up stop once the cache is full instead of churning it
+    public int capacity() {
+        return maxEntries;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.leelasowmya.topalbums.cache;
+
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Safety net for missed NOTIFY messages: periodically compares the version of every cached album with the
+// database (one query per chunk of IDs) and evicts anything that changed or was deleted
+// Bounds how long a node can serve a stale album to the check interval, even if notifications are lost
+@Slf4j
+@Component
+public class AlbumCacheVersionCheck {
+    private static final int CHUNK_SIZE = 500;
+
+    private final AlbumCache albumCache;
+    private final AlbumRepository albumRepository;
+    private final Counter staleEvictions;
+
+    public AlbumCacheVersionCheck(AlbumCache albumCache, AlbumRepository albumRepository, MeterRegistry meterRegistry) {
+        this.albumCache = albumCache;
+        this.albumRepository = albumRepository;
+        this.staleEvictions = Counter.builder("albums.album.cache.stale.evictions")
+                .description("Stale entries found by the version check (i.e. missed invalidations)")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.album-cache.version-check-interval:30s}")
+    public void verifyCachedVersions() {
+        List<Map.Entry<String, Long>> cached = new ArrayList<>(albumCache.cachedVersions().entrySet());
+        int stale = 0;
+        for (int from = 0; from < cached.size(); from += CHUNK_SIZE) {
+            List<Map.Entry<String, Long>> chunk = cached.subList(from, Math.min(from + CHUNK_SIZE, cached.size()));
+            Map<String, Long> current = new HashMap<>();
+            albumRepository.findVersionsByIdIn(chunk.stream().map(Map.Entry::getKey).toList())
+                    .forEach(row -> current.put(row.getId(), row.getVersion()));
+            for (Map.Entry<String, Long> entry : chunk) {
+                // Missing from the result means the album was deleted
+                if (!current.containsKey(entry.getKey()) || !Objects.equals(current.get(entry.getKey()), entry.getValue())) {
+                    albumCache.invalidateIfVersion(entry.getKey(), entry.getValue());
+                    stale++;
+                }
+            }
+        }
+        if (stale > 0) {
+            staleEvictions.increment(stale);
+            log.warn("Version check evicted {} stale albums from cache", stale);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.leelasowmya.topalbums.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leelasowmya.topalbums.domain.Album;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Writes Album and Page<Album> responses from pre-serialized JSON instead of running Jackson on every request
+// - each album's JSON is encoded once (with the app's ObjectMapper, so the bytes are exactly what Jackson
+//   would have produced) and kept as UTF-8 bytes, keyed by id and @Version
+// - any write bumps the version, so the next response re-encodes that one album; nothing else is invalidated
+// - list pages are written by splicing the cached fragments into a small page envelope
+// Registered as an HttpMessageConverter bean, which Spring puts in front of the default Jackson converter;
+// controllers keep returning Album / Page<Album>. Only writes JSON - request bodies still go through Jackson
+// Pages are matched on the handler's declared type, so a Page of anything else is left to Jackson
+@Component
+public class AlbumJsonConverter extends AbstractGenericHttpMessageConverter<Object> implements MeterBinder {
+    private static final byte[] CONTENT_START = ascii("{\"content\":[");
+    private static final byte[] PAGEABLE = ascii("],\"pageable\":");
+    private static final byte[] TOTAL_PAGES = ascii(",\"totalPages\":");
+    private static final byte[] TOTAL_ELEMENTS = ascii(",\"totalElements\":");
+    private static final byte[] LAST = ascii(",\"last\":");
+    private static final byte[] SIZE = ascii(",\"size\":");
+    private static final byte[] NUMBER = ascii(",\"number\":");
+    private static final byte[] SORT = ascii(",\"sort\":");
+    private static final byte[] FIRST = ascii(",\"first\":");
+    private static final byte[] NUMBER_OF_ELEMENTS = ascii(",\"numberOfElements\":");
+    private static final byte[] EMPTY = ascii(",\"empty\":");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+
+    // Read on every album of every response, so no lock: a concurrent map, with LRU eviction done approximately
+    // (see evictLeastRecentlyUsed) instead of keeping an access order under a lock
+    private final ConcurrentHashMap<String, Encoded> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder encodes = new LongAdder();
+
+    private static final class Encoded {
+        private final long version;
+        private final byte[] json;
+        // nanoTime of the last hit; written without coordination, a lost update only skews eviction order
+        private volatile long lastUsed = System.nanoTime();
+
+        private Encoded(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+
+    public AlbumJsonConverter(ObjectMapper objectMapper,
+                              @Value("${app.album-json-cache.max-entries:10000}") int maxEntries) {
+        super(MediaType.APPLICATION_JSON);
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    // Bound by Spring Boot when a MeterRegistry exists (not in web-slice tests)
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("albums.json.cache.hits", hits, LongAdder::sum).register(registry);
+        FunctionCounter.builder("albums.json.cache.encodes", encodes, LongAdder::sum)
+                .description("Albums serialized because their JSON wasn't cached or was out of date").register(registry);
+        Gauge.builder("albums.json.cache.size", this, AlbumJsonConverter::size).register(registry);
+    }
+
+    // Without a declared type (RestTemplate and the like) only a plain Album can be told apart
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return Album.class.isAssignableFrom(clazz);
+    }
+
+    // An Album, or a Page declared as Page<Album>; Page<?> or a raw Page isn't taken, its content could be anything
+    @Override
+    public boolean canWrite(@Nullable Type type, @NonNull Class<?> clazz, @Nullable MediaType mediaType) {
+        return (supports(clazz) || isAlbumPage(type)) && canWrite(mediaType);
+    }
+
+    private static boolean isAlbumPage(@Nullable Type type) {
+        if (type == null) {
+            return false;
+        }
+        ResolvableType declared = ResolvableType.forType(type);
+        return Page.class.isAssignableFrom(declared.toClass())
+                && Album.class.isAssignableFrom(declared.as(Page.class).getGeneric(0).toClass());
+    }
+
+    @Override
+    public boolean canRead(@NonNull Class<?> clazz, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(@NonNull Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    @NonNull
+    public Object read(@NonNull Type type, @Nullable Class<?> contextClass, @NonNull HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("AlbumJsonConverter only writes responses", inputMessage);
+    }
+
+    @Override
+    @NonNull
+    protected Object readInternal(@NonNull Class<?> clazz, @NonNull HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("AlbumJsonConverter only writes responses", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(@NonNull Object value, @Nullable Type type, @NonNull HttpOutputMessage outputMessage)
+            throws IOException {
+        OutputStream out = outputMessage.getBody();
+        if (value instanceof Page<?> page) {
+            writePage(page, out);
+        } else {
+            out.write(toJson((Album) value));
+        }
+    }
+
+    // What Jackson writes for a PageImpl: same keys, same values (Jackson's own key order there follows reflection)
+    // Only the albums come from the cache; pageable and sort are small and still go through the ObjectMapper
+    private void writePage(Page<?> page, OutputStream out) throws IOException {
+        out.write(CONTENT_START);
+        boolean first = true;
+        for (Object item : page.getContent()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write(toJson((Album) item)); // canWrite only lets Page<Album> through
+        }
+        out.write(PAGEABLE);
+        out.write(objectMapper.writeValueAsBytes(page.getPageable()));
+        writeField(out, TOTAL_PAGES, page.getTotalPages());
+        writeField(out, TOTAL_ELEMENTS, page.getTotalElements());
+        writeField(out, LAST, page.isLast());
+        writeField(out, SIZE, page.getSize());
+        writeField(out, NUMBER, page.getNumber());
+        out.write(SORT);
+        out.write(objectMapper.writeValueAsBytes(page.getSort()));
+        writeField(out, FIRST, page.isFirst());
+        writeField(out, NUMBER_OF_ELEMENTS, page.getNumberOfElements());
+        writeField(out, EMPTY, page.isEmpty());
+        out.write('}');
+    }
+
+    private static void writeField(OutputStream out, byte[] key, long value) throws IOException {
+        out.write(key);
+        writeDigits(out, value);
+    }
+
+    private static void writeField(OutputStream out, byte[] key, boolean value) throws IOException {
+        out.write(key);
+        out.write(value ? TRUE : FALSE);
+    }
+
+    // Page counts and indexes are never negative
+    private static void writeDigits(OutputStream out, long value) throws IOException {
+        if (value >= 10) {
+            writeDigits(out, value / 10);
+        }
+        out.write((int) ('0' + value % 10));
+    }
+
+    // Cached bytes if they were encoded from this version of the album, otherwise encode (and cache) them now
+    // The returned array is shared - callers only ever write it out
+    byte[] toJson(Album album) throws IOException {
+        String id = album.getId();
+        Long version = album.getVersion();
+        if (id == null || version == null) {
+            return objectMapper.writeValueAsBytes(album); // not persisted yet, nothing to key it by
+        }
+        Encoded cached = entries.get(id);
+        if (cached != null && cached.version == version) {
+            cached.lastUsed = System.nanoTime();
+            hits.increment();
+            return cached.json;
+        }
+
+        byte[] json = objectMapper.writeValueAsBytes(album);
+        encodes.increment();
+        // Don't overwrite a newer version another request cached meanwhile
+        entries.merge(id, new Encoded(version, json), (current, fresh) -> current.version < fresh.version ? fresh : current);
+        if (entries.size() > maxEntries) {
+            evictLeastRecentlyUsed();
+        }
+        return json;
+    }
+
+    // Approximate LRU: once over capacity, one thread drops the least recently used tenth of the cache in a
+    // single sweep while other requests carry on (they don't wait for it, the map may briefly overshoot)
+    // The sort is paid once per maxEntries / 10 new entries rather than on every access
+    private void evictLeastRecentlyUsed() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int excess = entries.size() - maxEntries;
+            if (excess <= 0) {
+                return;
+            }
+            long[] lastUsed = entries.values().stream().mapToLong(encoded -> encoded.lastUsed).sorted().toArray();
+            long cutoff = lastUsed[Math.min(Math.max(excess, maxEntries / 10), lastUsed.length) - 1];
+            entries.values().removeIf(encoded -> encoded.lastUsed <= cutoff);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
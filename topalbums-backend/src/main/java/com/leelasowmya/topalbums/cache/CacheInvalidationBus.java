@@ -0,0 +1,97 @@
+package com.leelasowmya.topalbums.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+// Keeps the node-local caches (AlbumCache, ImageCache) coherent across every AlbumApplication instance
+// - writes call albumChanged()/photoChanged(); that sends a tiny message with Postgres NOTIFY on the write's
+//   own transaction, so other nodes only hear about it if (and once) the write commits
+// - this node's caches are invalidated right after the commit
+// - PostgresInvalidationListener receives everyone's messages and hands them back to apply() in batches
+// Message format: "a:<album id>", "p:<image filename>" or "*" (drop everything)
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+    public static final String CHANNEL = "album_cache_invalidation";
+    public static final String ALL = "*";
+    private static final String ALBUM_PREFIX = "a:";
+    private static final String PHOTO_PREFIX = "p:";
+
+    private final AlbumCache albumCache;
+    private final ImageCache imageCache;
+    private final JdbcTemplate jdbcTemplate;
+    // Only switched on once PostgresInvalidationListener has confirmed the database is Postgres
+    private volatile boolean notifyEnabled;
+
+    private final Counter published;
+    private final Counter applied;
+
+    public CacheInvalidationBus(AlbumCache albumCache, ImageCache imageCache, JdbcTemplate jdbcTemplate,
+                                MeterRegistry meterRegistry) {
+        this.albumCache = albumCache;
+        this.imageCache = imageCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.published = Counter.builder("albums.cache.invalidations.published").register(meterRegistry);
+        this.applied = Counter.builder("albums.cache.invalidations.applied").register(meterRegistry);
+    }
+
+    public void albumChanged(String id) {
+        publish(ALBUM_PREFIX + id);
+    }
+
+    // Accepts a bare filename or a full photo URL (only the part after the last "/" is used)
+    public void photoChanged(String photoUrlOrFilename) {
+        if (photoUrlOrFilename != null) {
+            publish(PHOTO_PREFIX + photoUrlOrFilename.substring(photoUrlOrFilename.lastIndexOf('/') + 1));
+        }
+    }
+
+    // Applies a batch of messages to this node's caches (messages are already de-duplicated by the caller)
+    public void apply(Collection<String> messages) {
+        for (String message : messages) {
+            if (ALL.equals(message)) {
+                albumCache.clear();
+                imageCache.clear();
+            } else if (message.startsWith(ALBUM_PREFIX)) {
+                albumCache.invalidate(message.substring(ALBUM_PREFIX.length()));
+            } else if (message.startsWith(PHOTO_PREFIX)) {
+                imageCache.invalidate(message.substring(PHOTO_PREFIX.length()));
+            } else {
+                log.warn("Ignoring unknown cache invalidation message: {}", message);
+                continue;
+            }
+            applied.increment();
+        }
+    }
+
+    void setNotifyEnabled(boolean notifyEnabled) {
+        this.notifyEnabled = notifyEnabled;
+    }
+
+    private void publish(String message) {
+        published.increment();
+        if (notifyEnabled) {
+            // pg_notify rather than NOTIFY so the payload can be a bind parameter
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, message);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Invalidating before the commit would let a concurrent reader re-cache the old row
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(List.of(message));
+                }
+            });
+        } else {
+            apply(List.of(message));
+        }
+    }
+}
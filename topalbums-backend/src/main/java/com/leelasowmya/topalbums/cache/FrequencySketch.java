@@ -0,0 +1,60 @@
+package com.leelasowmya.topalbums.cache;
+
+// Approximate "how often has this key been asked for recently" counter (a count-min sketch)
+// Uses a fixed amount of memory however many distinct keys it sees, so a crawler walking every image once
+// can't blow it up. Counters saturate at 15 and are all halved periodically so old popularity fades out.
+// Not thread safe - callers synchronise (ImageCache uses it under its own lock)
+class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+    private final int[][] counters;
+    private final int mask;
+    private final int resetAfter;
+    private int additions;
+
+    FrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(64, expectedKeys) - 1) << 1;
+        this.counters = new int[DEPTH][width];
+        this.mask = width - 1;
+        this.resetAfter = width * 10;
+    }
+
+    void increment(Object key) {
+        int hash = key.hashCode();
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            if (counters[row][index] < MAX_COUNT) {
+                counters[row][index]++;
+            }
+        }
+        if (++additions >= resetAfter) {
+            halve();
+        }
+    }
+
+    // Estimated recent access count - the smallest counter is the one least inflated by collisions
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters[row][indexOf(hash, row)]);
+        }
+        return min;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9E3779B1;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void halve() {
+        for (int[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+        additions /= 2;
+    }
+}
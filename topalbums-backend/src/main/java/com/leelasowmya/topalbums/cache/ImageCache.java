@@ -0,0 +1,191 @@
+package com.leelasowmya.topalbums.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Cache of hot cover images, bounded by total bytes rather than number of entries
+// - image bytes live in direct (off-heap) ByteBuffers, so big covers don't churn the Java heap / GC
+// - eviction is least-recently-used, but a new image only gets in if it's been asked for more often than
+//   the image it would push out (TinyLFU-style admission) - one-hit wonders from crawlers never displace
+//   the covers real users keep loading
+// - entries are removed by invalidate() when an upload replaces the file
+@Slf4j
+@Component
+public class ImageCache {
+    // An image has to be requested at least this often before it's worth copying off-heap at all
+    private static final int MIN_ADMISSION_FREQUENCY = 2;
+    // Rough average cover size, only used to size the frequency sketch
+    private static final long TYPICAL_IMAGE_BYTES = 256 * 1024;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Access-ordered, so iteration starts at the least recently used entry (guarded by lock)
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long currentBytes;
+    // Bumped on every invalidation; a load that started before one can't put its (possibly stale) bytes in
+    private long generation;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter rejections;
+    private final Counter evictions;
+
+    public ImageCache(@Value("${app.image-cache.max-bytes:256MB}") DataSize maxBytes,
+                      @Value("${app.image-cache.max-entry-bytes:16MB}") DataSize maxEntryBytes,
+                      MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes.toBytes();
+        this.maxEntryBytes = maxEntryBytes.toBytes();
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1, this.maxBytes / TYPICAL_IMAGE_BYTES) * 8));
+
+        this.hits = Counter.builder("albums.image.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("albums.image.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.rejections = Counter.builder("albums.image.cache.admission.rejected")
+                .description("Images not cached because they weren't popular enough").register(meterRegistry);
+        this.evictions = Counter.builder("albums.image.cache.evictions").register(meterRegistry);
+        Gauge.builder("albums.image.cache.bytes", this, ImageCache::sizeInBytes).register(meterRegistry);
+    }
+
+    // Returns a read-only view of the cached image positioned at 0, or null on a miss
+    // Every call counts towards the image's popularity, hit or not
+    public ByteBuffer get(String filename) {
+        lock.lock();
+        try {
+            sketch.increment(filename);
+            ByteBuffer image = entries.get(filename);
+            if (image == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return image.asReadOnlyBuffer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Token to pass to put() - taken before reading the file from disk
+    public long currentGeneration() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Cheap pre-check so the caller only copies a file off-heap when put() is likely to accept it
+    public boolean wouldAdmit(String filename, long sizeInBytes) {
+        lock.lock();
+        try {
+            return sizeInBytes <= maxEntryBytes && sizeInBytes <= maxBytes
+                    && sketch.frequency(filename) >= MIN_ADMISSION_FREQUENCY;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Offers a direct buffer (position 0, limit = image size) to the cache
+    // Returns false if it was turned away: too big, not popular enough, or invalidated since loadGeneration
+    public boolean put(String filename, ByteBuffer image, long loadGeneration) {
+        int size = image.remaining();
+        lock.lock();
+        try {
+            if (loadGeneration != generation || size > maxEntryBytes || size > maxBytes) {
+                return false;
+            }
+            int frequency = sketch.frequency(filename);
+            if (frequency < MIN_ADMISSION_FREQUENCY) {
+                rejections.increment();
+                return false;
+            }
+
+            ByteBuffer previous = entries.remove(filename);
+            if (previous != null) {
+                currentBytes -= previous.capacity();
+            }
+
+            // Make room from the LRU end - but give up (and keep the victims) if any victim is more popular
+            long needed = currentBytes + size - maxBytes;
+            if (needed > 0 && !canEvict(needed, frequency)) {
+                rejections.increment();
+                return false;
+            }
+            Iterator<Map.Entry<String, ByteBuffer>> eldest = entries.entrySet().iterator();
+            while (currentBytes + size > maxBytes && eldest.hasNext()) {
+                currentBytes -= eldest.next().getValue().capacity();
+                eldest.remove();
+                evictions.increment();
+            }
+
+            entries.put(filename, image);
+            currentBytes += size;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called when the file behind an entry changes or is deleted
+    public void invalidate(String filename) {
+        lock.lock();
+        try {
+            generation++;
+            ByteBuffer removed = entries.remove(filename);
+            if (removed != null) {
+                currentBytes -= removed.capacity();
+                log.info("Evicted replaced image {} from cache", filename);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops everything, e.g. when invalidation messages from other nodes may have been missed
+    public void clear() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+            currentBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long sizeInBytes() {
+        lock.lock();
+        try {
+            return currentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canEvict(long needed, int candidateFrequency) {
+        long freed = 0;
+        for (Map.Entry<String, ByteBuffer> entry : entries.entrySet()) {
+            if (freed >= needed) {
+                break;
+            }
+            if (sketch.frequency(entry.getKey()) > candidateFrequency) {
+                return false;
+            }
+            freed += entry.getValue().capacity();
+        }
+        return freed >= needed;
+    }
+}
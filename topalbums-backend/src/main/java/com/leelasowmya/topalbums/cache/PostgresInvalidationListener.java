@@ -0,0 +1,158 @@
+package com.leelasowmya.topalbums.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Background thread that LISTENs for CacheInvalidationBus messages from all nodes (including this one)
+// - messages arriving close together are collected into one batch and de-duplicated before being applied,
+//   so a burst of writes to the same album costs one invalidation
+// - whenever the connection drops, notifications may have been missed, so all caches are cleared on reconnect
+// Holds one pooled connection for as long as the app runs. Does nothing if the database isn't Postgres (e.g. H2)
+@Slf4j
+@Component
+public class PostgresInvalidationListener implements SmartLifecycle {
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    // After the first message of a batch, wait this long for more before applying
+    private static final int BATCH_WINDOW_MILLIS = 20;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final long RECONNECT_DELAY_MILLIS = 2000;
+
+    private final DataSource dataSource;
+    private final CacheInvalidationBus invalidationBus;
+    private final boolean enabled;
+
+    private final Counter received;
+    private final Counter batches;
+    private final Counter reconnects;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public PostgresInvalidationListener(DataSource dataSource, CacheInvalidationBus invalidationBus,
+                                        @Value("${app.cache.coherence.enabled:true}") boolean enabled,
+                                        MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.invalidationBus = invalidationBus;
+        this.enabled = enabled;
+        this.received = Counter.builder("albums.cache.notifications.received").register(meterRegistry);
+        this.batches = Counter.builder("albums.cache.notifications.batches").register(meterRegistry);
+        this.reconnects = Counter.builder("albums.cache.notifications.reconnects").register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled || !isPostgres()) {
+            log.info("Cross-node cache invalidation disabled (not enabled or database isn't PostgreSQL)");
+            return;
+        }
+        invalidationBus.setNotifyEnabled(true);
+        thread = new Thread(this::listen, "album-cache-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CacheInvalidationBus.CHANNEL);
+                }
+                // Anything sent while we weren't listening is lost - start from empty caches
+                invalidationBus.apply(List.of(CacheInvalidationBus.ALL));
+                log.info("Listening for cache invalidations on channel {}", CacheInvalidationBus.CHANNEL);
+
+                while (running) {
+                    applyNextBatch(pgConnection);
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Runtime failures too (a pool timeout, a bad unwrap, a bug applying a batch): anything that ends
+                // this loop would otherwise kill the thread and leave caches unsynchronised for good
+                if (!running) {
+                    return;
+                }
+                reconnects.increment();
+                log.warn("Lost cache invalidation connection, reconnecting in {}ms", RECONNECT_DELAY_MILLIS, e);
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    // Waits up to POLL_TIMEOUT_MILLIS for a notification, then keeps collecting while more arrive within
+    // BATCH_WINDOW_MILLIS of each other and applies them as one de-duplicated batch; returns the batch size
+    int applyNextBatch(PGConnection pgConnection) throws SQLException {
+        PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+        if (notifications == null || notifications.length == 0) {
+            return 0;
+        }
+        Set<String> batch = new LinkedHashSet<>();
+        collect(notifications, batch);
+        while (batch.size() < MAX_BATCH_SIZE) {
+            PGNotification[] more = pgConnection.getNotifications(BATCH_WINDOW_MILLIS);
+            if (more == null || more.length == 0) {
+                break;
+            }
+            collect(more, batch);
+        }
+        invalidationBus.apply(batch);
+        batches.increment();
+        return batch.size();
+    }
+
+    private void collect(PGNotification[] notifications, Set<String> batch) {
+        for (PGNotification notification : notifications) {
+            received.increment();
+            batch.add(notification.getParameter());
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private boolean isPostgres() {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equals(product);
+        } catch (Exception e) {
+            log.warn("Could not determine database type, cross-node cache invalidation disabled", e);
+            return false;
+        }
+    }
+}
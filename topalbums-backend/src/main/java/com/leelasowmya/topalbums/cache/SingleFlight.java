@@ -0,0 +1,89 @@
+package com.leelasowmya.topalbums.cache;
+
+import com.leelasowmya.topalbums.exception.LoadTimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Coalesces concurrent loads of the same key into one ("single flight")
+// The first caller for a key runs the loader on its own thread; everyone arriving while that load is
+// still running waits for its result instead of hitting the DB/disk again
+// Nothing is cached - once the load finishes the key is forgotten and the next caller loads afresh
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final String name;
+    private final Duration timeout;
+
+    private final Counter loads;
+    private final Counter coalesced;
+    private final Counter timeouts;
+
+    public SingleFlight(String name, Duration timeout, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.timeout = timeout;
+        this.loads = Counter.builder("albums.singleflight.loads")
+                .description("Loads actually executed")
+                .tag("name", name).register(meterRegistry);
+        this.coalesced = Counter.builder("albums.singleflight.coalesced")
+                .description("Duplicate loads avoided by joining an in-flight load")
+                .tag("name", name).register(meterRegistry);
+        this.timeouts = Counter.builder("albums.singleflight.timeouts")
+                .description("Waiters that gave up on an in-flight load")
+                .tag("name", name).register(meterRegistry);
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> ours = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, ours);
+        if (existing == null) {
+            return runLoader(key, ours, loader);
+        }
+        coalesced.increment();
+        return await(key, existing);
+    }
+
+    private V runLoader(K key, CompletableFuture<V> ours, Supplier<V> loader) {
+        loads.increment();
+        try {
+            V value = loader.get();
+            ours.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            // Waiters get the very same exception (e.g. AlbumNotFoundException -> 404 for all of them)
+            ours.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Remove only our own entry - a later load for the same key may already have replaced it
+            inFlight.remove(key, ours);
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> existing) {
+        try {
+            return existing.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new LoadTimeoutException("Timed out waiting for " + name + " " + key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoadTimeoutException("Interrupted while waiting for " + name + " " + key);
+        } catch (ExecutionException e) {
+            // Unwrap so callers see the loader's exception, not the future's wrapper
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.leelasowmya.topalbums.changes;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumTombstone;
+
+import java.util.List;
+
+// One page of GET /albums/changes:
+// - albums: inserted or updated albums, in their current state
+// - deleted: albums to drop (album ids are never reused, so the two lists can be applied in any order)
+// - next: the token for the following call; hasMore means call again straight away
+public record AlbumChanges(List<Album> albums, List<AlbumTombstone> deleted, long next, boolean hasMore) {
+}
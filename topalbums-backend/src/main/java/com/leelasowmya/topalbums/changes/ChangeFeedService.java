@@ -0,0 +1,215 @@
+package com.leelasowmya.topalbums.changes;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumTombstone;
+import com.leelasowmya.topalbums.domain.ChangeLogState;
+import com.leelasowmya.topalbums.exception.ChangeTokenExpiredException;
+import com.leelasowmya.topalbums.exception.InvalidRequestException;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import com.leelasowmya.topalbums.repository.AlbumTombstoneRepository;
+import com.leelasowmya.topalbums.repository.ChangeLogStateRepository;
+import com.leelasowmya.topalbums.repository.ChangeLogStateRepository.ChangeLogPosition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// Change feed behind GET /albums/changes, so mirrors can sync what changed instead of re-reading the catalog:
+// - every album write stores a new change sequence number in Album.changeSeq; deletes leave an AlbumTombstone
+// - sequence numbers come from the single album_change_log row, whose UPDATE lock each writer holds until commit.
+//   That serializes album writes, but it means numbers become visible in commit order - a reader can never
+//   see seq 12 while seq 11 is still uncommitted and would later appear behind its token
+// - a page is two range scans (albums and tombstones by change_seq), so a sync costs what changed, not the table
+// - tombstones older than the retention are compacted away; tokens from before that get 410 Gone and must resync
+@Slf4j
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE) // assign sequence numbers before other startup runners touch the albums
+public class ChangeFeedService implements ApplicationRunner {
+    public static final int MAX_LIMIT = 1000;
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final AlbumRepository albumRepository;
+    private final AlbumTombstoneRepository tombstoneRepository;
+    private final ChangeLogStateRepository stateRepository;
+    private final TransactionTemplate transaction;
+    private final Duration tombstoneRetention;
+    private final Clock clock;
+
+    private final Counter tombstonesCompacted;
+    private final Counter expiredTokens;
+
+    public ChangeFeedService(AlbumRepository albumRepository, AlbumTombstoneRepository tombstoneRepository,
+                             ChangeLogStateRepository stateRepository, PlatformTransactionManager transactionManager,
+                             @Value("${app.changes.tombstone-retention:30d}") Duration tombstoneRetention,
+                             MeterRegistry meterRegistry) {
+        this.albumRepository = albumRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.stateRepository = stateRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.tombstoneRetention = tombstoneRetention;
+        this.clock = Clock.systemUTC();
+        this.tombstonesCompacted = Counter.builder("albums.changes.tombstones.compacted").register(meterRegistry);
+        this.expiredTokens = Counter.builder("albums.changes.tokens.expired")
+                .description("Change feed requests rejected with 410 because the token predates compaction").register(meterRegistry);
+    }
+
+    // Creates the counter row on first start and numbers any albums that don't have a sequence number yet
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            transaction.executeWithoutResult(status -> reserve(0));
+        } catch (DataIntegrityViolationException e) {
+            log.info("Change log row was created by another node"); // they raced us to the insert - fine
+        }
+        assignMissingChangeSeqs();
+    }
+
+    // Called inside the writer's transaction; the counter row stays locked until that transaction ends
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long nextChangeSeq() {
+        reserve(1);
+        return stateRepository.findLastSeq();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDelete(String albumId) {
+        tombstoneRepository.save(new AlbumTombstone(nextChangeSeq(), albumId, LocalDateTime.now(clock)));
+    }
+
+    // Changes after the since token, oldest first; since=0 returns the whole catalog (a fresh mirror's first sync)
+    @Transactional(readOnly = true)
+    public AlbumChanges changesSince(long since, int limit) {
+        if (since < 0 || limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidRequestException("since must be >= 0 and limit between 1 and " + MAX_LIMIT);
+        }
+        long lastSeq = 0;
+        long compactedThrough = 0;
+        Optional<ChangeLogPosition> position = stateRepository.findPosition();
+        if (position.isPresent()) {
+            lastSeq = position.get().getLastSeq();
+            compactedThrough = position.get().getCompactedThrough();
+        }
+        // Older than compaction: deletes may be missing. Ahead of the log: the token is from another database
+        if ((since > 0 && since < compactedThrough) || since > lastSeq) {
+            expiredTokens.increment();
+            throw new ChangeTokenExpiredException("Change token " + since + " has expired - resync from GET /albums/changes?since=0");
+        }
+
+        // Everything up to the last committed number is final: a number above it may still be in flight.
+        // Reading only up to this horizon keeps the two queries consistent without a snapshot transaction
+        long upTo = lastSeq;
+        PageRequest firstRows = PageRequest.of(0, limit + 1);
+        List<Album> albums = albumRepository.findChanges(since, upTo, firstRows);
+        List<AlbumTombstone> tombstones = tombstoneRepository.findChanges(since, upTo, firstRows);
+
+        // Merge the two ordered lists and keep the first `limit` changes
+        List<Album> pageAlbums = new ArrayList<>();
+        List<AlbumTombstone> pageDeleted = new ArrayList<>();
+        int a = 0;
+        int t = 0;
+        long last = since;
+        while (pageAlbums.size() + pageDeleted.size() < limit && (a < albums.size() || t < tombstones.size())) {
+            if (t >= tombstones.size()
+                    || (a < albums.size() && albums.get(a).getChangeSeq() < tombstones.get(t).getChangeSeq())) {
+                Album album = albums.get(a++);
+                pageAlbums.add(album);
+                last = album.getChangeSeq();
+            } else {
+                AlbumTombstone tombstone = tombstones.get(t++);
+                pageDeleted.add(tombstone);
+                last = tombstone.getChangeSeq();
+            }
+        }
+        boolean hasMore = a < albums.size() || t < tombstones.size();
+        // With nothing left the client can jump straight to the horizon, skipping numbers of re-updated albums
+        return new AlbumChanges(pageAlbums, pageDeleted, hasMore ? last : upTo, hasMore);
+    }
+
+    // Drops tombstones past retention; the counter row is locked meanwhile so no delete can slip in below the mark
+    @Scheduled(fixedDelayString = "${app.changes.compaction-interval:1h}")
+    public void compactTombstones() {
+        LocalDateTime cutoff = LocalDateTime.now(clock).minus(tombstoneRetention);
+        Integer removed = transaction.execute(status -> {
+            Long through = tombstoneRepository.findLastChangeSeqDeletedBefore(cutoff);
+            if (through == null) {
+                return 0;
+            }
+            reserve(0);
+            int deleted = tombstoneRepository.deleteThrough(through);
+            stateRepository.markCompactedThrough(through);
+            return deleted;
+        });
+        if (removed != null && removed > 0) {
+            tombstonesCompacted.increment(removed);
+            log.info("Compacted {} album tombstones older than {}", removed, cutoff);
+        }
+    }
+
+    // Gives albums without a sequence number one, a batch per transaction; returns how many were numbered
+    // First moves the counter past any numbers already in the table - a snapshot restore brings its albums'
+    // numbers along, and handing them out again would collide with idx_albums_change_seq
+    public int assignMissingChangeSeqs() {
+        transaction.executeWithoutResult(status -> catchUpWithStoredChangeSeqs());
+        int assigned = 0;
+        while (true) {
+            Integer batch = transaction.execute(status -> {
+                reserve(0);
+                List<String> ids = albumRepository.findIdsWithoutChangeSeq(PageRequest.of(0, BACKFILL_BATCH_SIZE));
+                reserve(ids.size());
+                long seq = stateRepository.findLastSeq() - ids.size();
+                for (String id : ids) {
+                    albumRepository.assignChangeSeq(id, ++seq);
+                }
+                return ids.size();
+            });
+            assigned += batch == null ? 0 : batch;
+            if (batch == null || batch < BACKFILL_BATCH_SIZE) {
+                break;
+            }
+        }
+        if (assigned > 0) {
+            log.info("Assigned change sequence numbers to {} existing albums", assigned);
+        }
+        return assigned;
+    }
+
+    private void catchUpWithStoredChangeSeqs() {
+        reserve(0);
+        Long stored = albumRepository.findMaxChangeSeq();
+        long lastSeq = stateRepository.findLastSeq();
+        if (stored != null && stored > lastSeq) {
+            stateRepository.reserve(stored - lastSeq);
+            // Those albums came from another history: mirror tokens from before it can't be trusted, so they get
+            // 410 Gone and resync
+            stateRepository.markCompactedThrough(stored);
+            log.info("Change log moved from {} to {} to match restored albums", lastSeq, stored);
+        }
+    }
+
+    // Creates the counter row the first time it's needed (normally already done by run() at startup)
+    private void reserve(long count) {
+        if (stateRepository.reserve(count) == 0) {
+            stateRepository.saveAndFlush(new ChangeLogState(ChangeLogState.ID, 0, 0));
+            stateRepository.reserve(count);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.leelasowmya.topalbums.config;
+
+import com.leelasowmya.topalbums.bulkhead.BulkheadFilter;
+import com.leelasowmya.topalbums.bulkhead.BulkheadProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+// Registers the bulkhead filter that keeps uploads, image reads, metadata reads and writes in separate
+// concurrency pools (see app.bulkhead in application.yml)
+@Configuration
+@EnableConfigurationProperties(BulkheadProperties.class)
+@ConditionalOnProperty(prefix = "app.bulkhead", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class BulkheadConfig {
+
+    @Bean
+    public FilterRegistrationBean<BulkheadFilter> bulkheadFilter(BulkheadProperties properties, MeterRegistry meterRegistry) {
+        FilterRegistrationBean<BulkheadFilter> registration =
+                new FilterRegistrationBean<>(new BulkheadFilter(properties, meterRegistry));
+        registration.addUrlPatterns("/albums", "/albums/*");
+        // Run early in the chain so shed requests cost as little as possible
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
@@ -0,0 +1,25 @@
+package com.leelasowmya.topalbums.config;
+
+import com.leelasowmya.topalbums.ingest.UploadSizeFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.unit.DataSize;
+
+// Registers the Content-Length check for cover uploads (see UploadSizeFilter)
+@Configuration
+public class UploadConfig {
+
+    @Bean
+    public FilterRegistrationBean<UploadSizeFilter> uploadSizeFilter(
+            @Value("${spring.servlet.multipart.max-request-size:21MB}") DataSize maxRequestSize) {
+        FilterRegistrationBean<UploadSizeFilter> registration =
+                new FilterRegistrationBean<>(new UploadSizeFilter(maxRequestSize));
+        registration.addUrlPatterns("/albums/*");
+        // Ahead of the bulkhead filter, so an oversized upload never holds an upload slot
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+}
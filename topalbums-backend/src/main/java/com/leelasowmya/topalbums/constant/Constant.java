@@ -1,8 +1,14 @@
 package com.leelasowmya.topalbums.constant;
 
+import java.time.Duration;
+
 public class Constant {
+    // Default cover directory; app.photo-directory overrides it (tests point it at a temporary directory)
     public static final String PHOTO_DIRECTORY = System.getProperty("user.home") + "/Documents/Projects/albumImages/";
     public static final String PHOTO_PUBLIC_URL = "/albums/image/";
 
+    // How long a request waits for another thread's in-flight load of the same album/image before giving up
+    public static final Duration SINGLE_FLIGHT_TIMEOUT = Duration.ofSeconds(5);
+
     public static final String X_REQUESTED_WITH = "X-Requested-With";
 }
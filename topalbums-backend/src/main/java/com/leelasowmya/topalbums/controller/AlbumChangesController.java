@@ -0,0 +1,26 @@
+package com.leelasowmya.topalbums.controller;
+
+import com.leelasowmya.topalbums.changes.AlbumChanges;
+import com.leelasowmya.topalbums.changes.ChangeFeedService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+@RequestMapping("/albums")
+public class AlbumChangesController {
+    private final ChangeFeedService changeFeedService;
+
+    // Handles HTTP GET /albums/changes?since=0&limit=100 - inserts, updates and deletes after the since token
+    // Start with since=0, then pass the returned "next" back; 410 Gone means the token is too old - start over
+    // since and limit are checked by the service (400 outside 0.. / 1..1000)
+    @GetMapping("/changes")
+    public ResponseEntity<AlbumChanges> getChanges(@RequestParam(defaultValue = "0") long since,
+                                                   @RequestParam(defaultValue = "100") int limit) {
+        log.info("Fetching album changes since {} (limit {})", since, limit);
+        return ResponseEntity.ok(changeFeedService.changesSince(since, limit));
+    }
+}
@@ -1,24 +1,24 @@
 package com.leelasowmya.topalbums.controller;
 
 import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumFilter;
+import com.leelasowmya.topalbums.service.AlbumPhoto;
 import com.leelasowmya.topalbums.service.AlbumService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.List;
 
-import static com.leelasowmya.topalbums.constant.Constant.PHOTO_DIRECTORY;
-import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
-import static org.springframework.http.MediaType.IMAGE_PNG_VALUE;
+import static org.springframework.http.MediaType.IMAGE_PNG;
 
 @RestController
 @RequiredArgsConstructor
@@ -47,11 +47,22 @@ public class AlbumController {
     }
 
     // Handles HTTP GET /albums?page=0&size=10
+    // Optional filters: artist, genre, yearFrom, yearTo, hasPhoto
+    // Optional sort: comma separated fields, "-" for descending, e.g. sort=artist,-releaseYear
+    // hasPhoto and sort need artist, genre or a year range alongside them (see AlbumSpecifications)
+    // Declared as Page<Album> (not ResponseEntity<?>) so AlbumJsonConverter can tell it's a page of albums
     @GetMapping
-    public ResponseEntity<?> getAllAlbums(@RequestParam(defaultValue = "0") int page,
-                                          @RequestParam(defaultValue = "10") int size) {
+    public ResponseEntity<Page<Album>> getAllAlbums(@RequestParam(defaultValue = "0") int page,
+                                                    @RequestParam(defaultValue = "10") int size,
+                                                    @RequestParam(required = false) String artist,
+                                                    @RequestParam(required = false) String genre,
+                                                    @RequestParam(required = false) String yearFrom,
+                                                    @RequestParam(required = false) String yearTo,
+                                                    @RequestParam(required = false) Boolean hasPhoto,
+                                                    @RequestParam(required = false) List<String> sort) {
         log.info("Fetching all albums - page: {}, size: {}", page, size);
-        Page<Album> pageResult = albumService.getAllAlbums(page, size);
+        AlbumFilter filter = new AlbumFilter(artist, genre, yearFrom, yearTo, hasPhoto);
+        Page<Album> pageResult = albumService.getAllAlbums(filter, sort, page, size);
         //return ResponseEntity.ok(pageResult.getContent());
         return ResponseEntity.ok(pageResult);
     }
@@ -75,12 +86,25 @@ public class AlbumController {
     }
 
     // Handles HTTP GET /albums/image/{filename} to serve the album photo as a raw image file
-    @GetMapping(path = "/image/{filename}", produces = { IMAGE_PNG_VALUE, IMAGE_JPEG_VALUE })
-    public byte[] getAlbumPhoto(@PathVariable("filename") String filename) throws IOException {
+    // Content-Type comes from the image's own bytes (PNG, JPEG, GIF or WebP), so no fixed produces list
+    // Cached covers are written from their off-heap buffer, others streamed from the file - no byte[] of the
+    // whole image is ever built on the heap
+    @GetMapping("/image/{filename}")
+    public void getAlbumPhoto(@PathVariable("filename") String filename, HttpServletResponse response) throws IOException {
         log.info("Serving image file: {}", filename);
-        // Construct full file path using the configured image directory and the filename from the URL
-        Path imagePath = Paths.get(PHOTO_DIRECTORY + filename);
-        return Files.readAllBytes(imagePath);
+        try (AlbumPhoto photo = albumService.getAlbumPhoto(filename)) {
+            response.setContentType(contentType(photo, filename));
+            response.setContentLengthLong(photo.size());
+            photo.writeTo(response.getOutputStream());
+        }
+    }
+
+    // Covers stored before uploads were checked may not be a format we recognise - fall back to the file name
+    private static String contentType(AlbumPhoto photo, String filename) {
+        if (photo.format() != null) {
+            return photo.format().mediaType().toString();
+        }
+        return MediaTypeFactory.getMediaType(filename).orElse(IMAGE_PNG).toString();
     }
 
     // Handles HTTP DELETE /albums/{id} to delete an album by ID
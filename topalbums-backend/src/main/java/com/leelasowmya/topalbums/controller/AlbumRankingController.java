@@ -0,0 +1,37 @@
+package com.leelasowmya.topalbums.controller;
+
+import com.leelasowmya.topalbums.ranking.AlbumRank;
+import com.leelasowmya.topalbums.ranking.PlayCounterService;
+import com.leelasowmya.topalbums.ranking.RankingWindow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+@RequestMapping("/albums")
+public class AlbumRankingController {
+    private static final int MAX_TOP_LIMIT = 100;
+
+    private final PlayCounterService playCounterService;
+
+    // Handles HTTP POST /albums/{id}/plays - counts one play in memory; it reaches the DB with the next batched flush
+    @PostMapping("/{id}/plays")
+    public ResponseEntity<Void> recordPlay(@PathVariable("id") String id) {
+        playCounterService.recordPlay(id);
+        return ResponseEntity.accepted().build(); // 202 - counted, persisted shortly
+    }
+
+    // Handles HTTP GET /albums/top?window=24h&limit=10 - most played albums in the window
+    @GetMapping("/top")
+    public ResponseEntity<List<AlbumRank>> getTopAlbums(@RequestParam(defaultValue = "24h") String window,
+                                                        @RequestParam(defaultValue = "10") int limit) {
+        log.info("Fetching top {} albums for window {}", limit, window);
+        int cappedLimit = Math.max(1, Math.min(limit, MAX_TOP_LIMIT));
+        return ResponseEntity.ok(playCounterService.getTopAlbums(RankingWindow.fromParam(window), cappedLimit));
+    }
+}
@@ -1,15 +1,21 @@
 package com.leelasowmya.topalbums.domain;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UuidGenerator;
 
@@ -18,11 +24,23 @@ import java.time.LocalDateTime;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
+@Builder(toBuilder = true) // toBuilder() gives caches a detached copy of the entity
 @Getter
 @Setter
 @JsonInclude(JsonInclude.Include.NON_DEFAULT)
-@Table(name = "albums")
+// Indexes back the filters on GET /albums: artist/genre lookups (optionally narrowed by year range),
+// year range on its own, the default createdTime ordering, and the change feed (GET /albums/changes)
+@Table(name = "albums", indexes = {
+        @Index(name = "idx_albums_artist_release_year", columnList = "artist, release_year"),
+        @Index(name = "idx_albums_genre_release_year", columnList = "genre, release_year"),
+        @Index(name = "idx_albums_release_year", columnList = "release_year"),
+        @Index(name = "idx_albums_created_time", columnList = "created_time"),
+        @Index(name = "idx_albums_change_seq", columnList = "change_seq", unique = true)
+})
 public class Album {
+    // A release year is 4 digits, so GET /albums can compare years as strings (see AlbumFilter)
+    public static final String YEAR_REGEX = "\\d{4}";
+
     @Id
     @UuidGenerator
     @Column(name = "id", unique = true, updatable = false)
@@ -31,11 +49,28 @@ public class Album {
     private String name;
     @NotBlank(message = "Artist name must not be empty")
     private String artist;
+    // Checked on every write (the request body and again by Hibernate before insert/update); empty means unknown
+    @Pattern(regexp = "(" + YEAR_REGEX + ")?", message = "Release year must be 4 digits, e.g. 1969")
+    @Column(name = "release_year")
     private String releaseYear;
     private String genre;
     private String albumUrl;
     private String photoUrl;
+    // Set by PhotoStorageReconciler when photoUrl points at a file that no longer exists on disk
+    @Column(name = "photo_missing", nullable = false)
+    @ColumnDefault("false")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private boolean photoMissing;
     @CreationTimestamp
     @Column(name = "created_time", updatable = false)
     private LocalDateTime createdTime;
+    // Bumped by Hibernate on every update - lets node-local caches check they still hold the latest row
+    @Version
+    @ColumnDefault("0") // so rows created before this column existed start at version 0
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+    // Position in the change feed - a new, higher number from ChangeFeedService on every write
+    @Column(name = "change_seq")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long changeSeq;
 }
@@ -0,0 +1,11 @@
+package com.leelasowmya.topalbums.domain;
+
+// Optional filters for GET /albums - a null field means "don't filter on this"
+// Years are compared as strings, which works because releaseYear is validated as a 4-digit year on write
+// (Album.YEAR_REGEX) and the filter's years are held to the same rule
+public record AlbumFilter(String artist, String genre, String yearFrom, String yearTo, Boolean hasPhoto) {
+
+    public static AlbumFilter none() {
+        return new AlbumFilter(null, null, null, null, null);
+    }
+}
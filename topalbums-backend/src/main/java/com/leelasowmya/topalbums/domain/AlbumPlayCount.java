@@ -0,0 +1,45 @@
+package com.leelasowmya.topalbums.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Number of plays an album got in one hour (UTC) - one row per album per hour
+// Rows are only ever written by PlayCounterService's batched upserts, never one per play
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@IdClass(AlbumPlayCount.Key.class)
+@Table(name = "album_plays", indexes = {
+        @Index(name = "idx_album_plays_bucket_start", columnList = "bucket_start")
+})
+public class AlbumPlayCount {
+    @Id
+    @Column(name = "album_id")
+    private String albumId;
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+    private long plays;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String albumId;
+        private LocalDateTime bucketStart;
+    }
+}
@@ -0,0 +1,66 @@
+package com.leelasowmya.topalbums.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+// Marks that an album was deleted, so GET /albums/changes can tell mirrors to drop it
+// Kept for app.changes.tombstone-retention, then compacted away by ChangeFeedService
+// The id is assigned (not generated), so without Persistable save() would merge: a select by id before
+// every insert. A tombstone is always new when created, so it's persisted straight away
+@Entity
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "album_tombstones")
+public class AlbumTombstone implements Persistable<Long> {
+    // The primary key doubles as the index the change feed reads in order
+    @Id
+    @Column(name = "change_seq")
+    private Long changeSeq;
+    @Column(name = "album_id", nullable = false)
+    private String albumId;
+    @Column(name = "deleted_time", nullable = false)
+    private LocalDateTime deletedTime;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    public AlbumTombstone(Long changeSeq, String albumId, LocalDateTime deletedTime) {
+        this.changeSeq = changeSeq;
+        this.albumId = albumId;
+        this.deletedTime = deletedTime;
+    }
+
+    @Override
+    @JsonIgnore
+    public Long getId() {
+        return changeSeq;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
@@ -0,0 +1,31 @@
+package com.leelasowmya.topalbums.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// The single row that hands out change sequence numbers (see ChangeFeedService)
+// Writers lock it for the rest of their transaction, so sequence numbers become visible in commit order
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Table(name = "album_change_log")
+public class ChangeLogState {
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+    // Last sequence number handed out
+    @Column(name = "last_seq", nullable = false)
+    private long lastSeq;
+    // Tombstones up to here have been compacted away - older sync tokens can't see every delete any more
+    @Column(name = "compacted_through", nullable = false)
+    private long compactedThrough;
+}
@@ -0,0 +1,7 @@
+package com.leelasowmya.topalbums.exception;
+
+public class ChangeTokenExpiredException extends RuntimeException {
+    public ChangeTokenExpiredException(String message) {
+        super(message);
+    }
+}
@@ -1,10 +1,12 @@
 package com.leelasowmya.topalbums.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -22,6 +24,38 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(errors);
     }
 
+    // Handles 400 Bad Request for unsupported query parameters (unknown sort field, malformed year...)
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequest(InvalidRequestException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    // Handles 400 Bad Request for uploads that aren't a supported image, or whose header is malformed
+    @ExceptionHandler(InvalidImageException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidImage(InvalidImageException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    // Handles 413 Payload Too Large for images over the byte, dimension or pixel limits
+    @ExceptionHandler(ImageTooLargeException.class)
+    public ResponseEntity<Map<String, String>> handleImageTooLarge(ImageTooLargeException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(error);
+    }
+
+    // Handles 413 Payload Too Large when the multipart body itself is over spring.servlet.multipart limits
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Map<String, String>> handleMaxUploadSize(MaxUploadSizeExceededException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Upload is too large");
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(error);
+    }
+
     // Handles 404 Not Found when album doesn't exist
     @ExceptionHandler(AlbumNotFoundException.class)
     public ResponseEntity<Map<String, String>> handleNotFound(AlbumNotFoundException ex) {
@@ -29,4 +63,30 @@ public class GlobalExceptionHandler {
         error.put("error", ex.getMessage());
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
     }
+
+    // Handles 404 Not Found when a cover image file doesn't exist
+    @ExceptionHandler(PhotoNotFoundException.class)
+    public ResponseEntity<Map<String, String>> handlePhotoNotFound(PhotoNotFoundException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+    }
+
+    // Handles 410 Gone when a change feed token predates tombstone compaction - the client must resync from scratch
+    @ExceptionHandler(ChangeTokenExpiredException.class)
+    public ResponseEntity<Map<String, String>> handleChangeTokenExpired(ChangeTokenExpiredException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.GONE).body(error);
+    }
+
+    // Handles 503 Service Unavailable when a coalesced load took too long - the client may retry shortly
+    @ExceptionHandler(LoadTimeoutException.class)
+    public ResponseEntity<Map<String, String>> handleLoadTimeout(LoadTimeoutException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
 }
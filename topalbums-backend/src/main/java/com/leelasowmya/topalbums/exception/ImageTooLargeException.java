@@ -0,0 +1,7 @@
+package com.leelasowmya.topalbums.exception;
+
+public class ImageTooLargeException extends RuntimeException {
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.leelasowmya.topalbums.exception;
+
+public class InvalidImageException extends RuntimeException {
+    public InvalidImageException(String message) {
+        super(message);
+    }
+}
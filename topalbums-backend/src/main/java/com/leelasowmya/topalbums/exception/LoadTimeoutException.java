@@ -0,0 +1,7 @@
+package com.leelasowmya.topalbums.exception;
+
+public class LoadTimeoutException extends RuntimeException {
+    public LoadTimeoutException(String message) {
+        super(message);
+    }
+}
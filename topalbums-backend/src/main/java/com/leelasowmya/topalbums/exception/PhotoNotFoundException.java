@@ -0,0 +1,7 @@
+package com.leelasowmya.topalbums.exception;
+
+public class PhotoNotFoundException extends RuntimeException {
+    public PhotoNotFoundException(String message) {
+        super(message);
+    }
+}
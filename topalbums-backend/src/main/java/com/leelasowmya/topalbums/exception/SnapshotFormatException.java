@@ -0,0 +1,7 @@
+package com.leelasowmya.topalbums.exception;
+
+public class SnapshotFormatException extends RuntimeException {
+    public SnapshotFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,74 @@
+package com.leelasowmya.topalbums.ingest;
+
+import com.leelasowmya.topalbums.exception.ImageTooLargeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// Passes every byte read through to an output stream, and fails once more than maxBytes have gone by
+// Lets the header be inspected and the file be stored in one pass over the upload, without buffering it
+class CopyingInputStream extends FilterInputStream {
+    private final OutputStream copy;
+    private final long maxBytes;
+    private long count;
+
+    CopyingInputStream(InputStream in, OutputStream copy, long maxBytes) {
+        super(in);
+        this.copy = copy;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            copied(1);
+            copy.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            copied(read);
+            copy.write(buffer, offset, read);
+        }
+        return read;
+    }
+
+    // Skipped bytes must still end up in the copy, so skip by reading
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] scratch = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(scratch, 0, (int) Math.min(n - skipped, scratch.length));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    // Mark/reset would replay bytes that were already copied
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    long count() {
+        return count;
+    }
+
+    private void copied(int bytes) {
+        count += bytes;
+        if (count > maxBytes) {
+            throw new ImageTooLargeException("Image is larger than the " + maxBytes / (1024 * 1024) + "MB limit");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.leelasowmya.topalbums.ingest;
+
+import org.springframework.http.MediaType;
+
+import java.nio.ByteBuffer;
+
+// Image formats accepted as album covers, recognised by their magic bytes - never by the client's filename
+public enum ImageFormat {
+    PNG(".png", MediaType.IMAGE_PNG),
+    JPEG(".jpg", MediaType.IMAGE_JPEG),
+    GIF(".gif", MediaType.IMAGE_GIF),
+    WEBP(".webp", MediaType.parseMediaType("image/webp"));
+
+    // Enough leading bytes to tell every format apart ("RIFF....WEBP" is the longest)
+    public static final int SNIFF_BYTES = 12;
+
+    private final String extension;
+    private final MediaType mediaType;
+
+    ImageFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    // Extension the stored file gets, so the file name always matches what's really inside
+    public String extension() {
+        return extension;
+    }
+
+    // Content-Type the image is served with
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    // Same as sniff(byte[], int) for the bytes from the buffer's position on; the position isn't moved
+    public static ImageFormat sniff(ByteBuffer image) {
+        int length = Math.min(SNIFF_BYTES, image.remaining());
+        byte[] head = new byte[length];
+        image.get(image.position(), head);
+        return sniff(head, length);
+    }
+
+    // Returns the format the leading bytes belong to, or null if they don't look like any supported image
+    static ImageFormat sniff(byte[] head, int length) {
+        if (length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G'
+                && head[4] == 0x0D && head[5] == 0x0A && head[6] == 0x1A && head[7] == 0x0A) {
+            return PNG;
+        }
+        if (length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            return JPEG;
+        }
+        if (length >= 6 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F' && head[3] == '8'
+                && (head[4] == '7' || head[4] == '9') && head[5] == 'a') {
+            return GIF;
+        }
+        if (length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return WEBP;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,182 @@
+package com.leelasowmya.topalbums.ingest;
+
+import com.leelasowmya.topalbums.exception.InvalidImageException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+
+// Reads just enough of an image to know its real format and dimensions
+// - the format comes from the magic bytes, the dimensions from the format's header fields
+// - nothing is decoded, so a decompression bomb (tiny file, gigantic pixel count) costs a few bytes to spot
+// - memory use is a handful of small fixed buffers, whatever the file size
+// Reads stop right after the dimensions, so the caller can keep consuming the same stream for the body
+final class ImageHeaderReader {
+    // JPEG metadata (EXIF, ICC profiles, thumbnails) comes before the frame header; anything needing more
+    // than this to reach the dimensions is treated as malformed
+    static final int MAX_HEADER_SCAN_BYTES = 1024 * 1024;
+
+    private static final byte[] PNG_IHDR = {'I', 'H', 'D', 'R'};
+
+    private ImageHeaderReader() {
+    }
+
+    static ImageInfo read(InputStream input) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(input, ImageFormat.SNIFF_BYTES);
+        byte[] head = in.readNBytes(ImageFormat.SNIFF_BYTES);
+        ImageFormat format = ImageFormat.sniff(head, head.length);
+        if (format == null) {
+            throw new InvalidImageException("Unsupported image format - only PNG, JPEG, GIF and WebP covers are accepted");
+        }
+        in.unread(head);
+
+        return switch (format) {
+            case PNG -> readPng(in);
+            case JPEG -> readJpeg(in);
+            case GIF -> readGif(in);
+            case WEBP -> readWebp(in);
+        };
+    }
+
+    // 8 byte signature, then the IHDR chunk must come first: length(4) "IHDR"(4) width(4) height(4), big-endian
+    private static ImageInfo readPng(InputStream in) throws IOException {
+        byte[] header = readExactly(in, 24);
+        for (int i = 0; i < PNG_IHDR.length; i++) {
+            if (header[12 + i] != PNG_IHDR[i]) {
+                throw new InvalidImageException("Malformed PNG: first chunk is not IHDR");
+            }
+        }
+        return new ImageInfo(ImageFormat.PNG, bigEndianInt(header, 16), bigEndianInt(header, 20));
+    }
+
+    // "GIF8?a", then the logical screen width and height as little-endian 16 bit values
+    private static ImageInfo readGif(InputStream in) throws IOException {
+        byte[] header = readExactly(in, 10);
+        return new ImageInfo(ImageFormat.GIF, littleEndianShort(header, 6), littleEndianShort(header, 8));
+    }
+
+    // RIFF container: "RIFF" size "WEBP", then the first chunk tells which of the three encodings is used
+    private static ImageInfo readWebp(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(30);
+        if (header.length < 25) {
+            throw new InvalidImageException("Malformed WebP: header is truncated");
+        }
+        String chunk = new String(header, 12, 4, StandardCharsets.US_ASCII);
+        switch (chunk) {
+            case "VP8X" -> { // extended: 24 bit (width - 1) and (height - 1)
+                requireLength(header, 30, "WebP");
+                int width = 1 + littleEndian24(header, 24);
+                int height = 1 + littleEndian24(header, 27);
+                return new ImageInfo(ImageFormat.WEBP, width, height);
+            }
+            case "VP8L" -> { // lossless: signature 0x2F, then 14 bit (width - 1) and (height - 1) packed together
+                if ((header[20] & 0xFF) != 0x2F) {
+                    throw new InvalidImageException("Malformed WebP: bad lossless signature");
+                }
+                int bits = (header[21] & 0xFF) | (header[22] & 0xFF) << 8 | (header[23] & 0xFF) << 16 | (header[24] & 0xFF) << 24;
+                return new ImageInfo(ImageFormat.WEBP, 1 + (bits & 0x3FFF), 1 + ((bits >>> 14) & 0x3FFF));
+            }
+            case "VP8 " -> { // lossy: 3 byte frame tag, start code 9D 01 2A, then 14 bit width and height
+                requireLength(header, 30, "WebP");
+                if ((header[23] & 0xFF) != 0x9D || (header[24] & 0xFF) != 0x01 || (header[25] & 0xFF) != 0x2A) {
+                    throw new InvalidImageException("Malformed WebP: bad lossy start code");
+                }
+                return new ImageInfo(ImageFormat.WEBP, littleEndianShort(header, 26) & 0x3FFF,
+                        littleEndianShort(header, 28) & 0x3FFF);
+            }
+            default -> throw new InvalidImageException("Malformed WebP: unknown chunk " + chunk);
+        }
+    }
+
+    // Walks the marker segments after SOI until a start-of-frame (SOFn) segment, skipping metadata on the way
+    // SOFn layout: length(2) precision(1) height(2) width(2), big-endian
+    private static ImageInfo readJpeg(InputStream in) throws IOException {
+        readExactly(in, 2); // SOI (FF D8), already checked by sniff()
+        long scanned = 2;
+        while (scanned < MAX_HEADER_SCAN_BYTES) {
+            int marker = nextMarker(in);
+            scanned += 2;
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                continue; // standalone markers have no length
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                throw new InvalidImageException("Malformed JPEG: image data starts before the frame header");
+            }
+            byte[] lengthBytes = readExactly(in, 2);
+            int length = (lengthBytes[0] & 0xFF) << 8 | (lengthBytes[1] & 0xFF);
+            if (length < 2) {
+                throw new InvalidImageException("Malformed JPEG: bad segment length");
+            }
+            if (isStartOfFrame(marker)) {
+                byte[] frame = readExactly(in, 5);
+                int height = (frame[1] & 0xFF) << 8 | (frame[2] & 0xFF);
+                int width = (frame[3] & 0xFF) << 8 | (frame[4] & 0xFF);
+                return new ImageInfo(ImageFormat.JPEG, width, height);
+            }
+            skipExactly(in, length - 2);
+            scanned += length;
+        }
+        throw new InvalidImageException("Malformed JPEG: no frame header in the first " + MAX_HEADER_SCAN_BYTES + " bytes");
+    }
+
+    // SOF0-SOF15, except DHT (C4), JPG (C8) and DAC (CC) which share the range
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static int nextMarker(InputStream in) throws IOException {
+        int b = in.read();
+        if (b != 0xFF) {
+            throw new InvalidImageException(b < 0 ? "Malformed JPEG: file is truncated" : "Malformed JPEG: expected a marker");
+        }
+        // Any number of 0xFF fill bytes may precede the marker code
+        while (b == 0xFF) {
+            b = in.read();
+        }
+        if (b < 0) {
+            throw new InvalidImageException("Malformed JPEG: file is truncated");
+        }
+        return b;
+    }
+
+    private static byte[] readExactly(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new InvalidImageException("Malformed image: file is truncated");
+        }
+        return bytes;
+    }
+
+    // Skips by reading, so the bytes still pass through any wrapping stream (see CopyingInputStream)
+    private static void skipExactly(InputStream in, int length) throws IOException {
+        byte[] scratch = new byte[Math.min(length, 8192)];
+        int remaining = length;
+        while (remaining > 0) {
+            int read = in.read(scratch, 0, Math.min(remaining, scratch.length));
+            if (read < 0) {
+                throw new InvalidImageException("Malformed image: file is truncated");
+            }
+            remaining -= read;
+        }
+    }
+
+    private static void requireLength(byte[] header, int length, String format) {
+        if (header.length < length) {
+            throw new InvalidImageException("Malformed " + format + ": header is truncated");
+        }
+    }
+
+    private static int bigEndianInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static int littleEndianShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int littleEndian24(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16;
+    }
+}
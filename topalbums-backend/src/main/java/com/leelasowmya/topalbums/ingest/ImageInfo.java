@@ -0,0 +1,8 @@
+package com.leelasowmya.topalbums.ingest;
+
+// What the header of an uploaded image says it is - read without decoding a single pixel
+public record ImageInfo(ImageFormat format, int width, int height) {
+    public long pixels() {
+        return (long) width * height;
+    }
+}
@@ -0,0 +1,120 @@
+package com.leelasowmya.topalbums.ingest;
+
+import com.leelasowmya.topalbums.exception.ImageTooLargeException;
+import com.leelasowmya.topalbums.exception.InvalidImageException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+// Validates and stores uploaded cover images in a single streaming pass:
+// 1. the upload is read through a CopyingInputStream that writes into a temp file next to the final one
+// 2. only the header is parsed (ImageHeaderReader) - real format from magic bytes, dimensions from the header
+// 3. unsupported / malformed / too many pixels -> rejected while just the header bytes are on disk
+// 4. otherwise the rest of the body is streamed through (still capped at max-bytes) and the temp file is
+//    atomically moved into place, so readers never see a half-written cover
+// Memory per upload is a few fixed-size buffers, whatever the file size
+// Limitation: uploads arrive as multipart, and the multipart parser spools the whole part to disk before the
+// controller runs - so a body within spring.servlet.multipart limits is stored once (as Tomcat's temp file)
+// even when its header is rejected here. UploadSizeFilter turns away bodies declared over the limit up front;
+// avoiding the spool entirely would need a raw (non-multipart) upload endpoint
+@Slf4j
+@Component
+public class ImageIngest {
+    private static final String TEMP_SUFFIX = ".upload";
+
+    private final long maxBytes;
+    private final long maxPixels;
+    private final int maxDimension;
+
+    private final Counter accepted;
+    private final Counter rejected;
+
+    public ImageIngest(@Value("${app.image-ingest.max-bytes:20MB}") DataSize maxBytes,
+                       @Value("${app.image-ingest.max-pixels:40000000}") long maxPixels,
+                       @Value("${app.image-ingest.max-dimension:12000}") int maxDimension,
+                       MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes.toBytes();
+        this.maxPixels = maxPixels;
+        this.maxDimension = maxDimension;
+        this.accepted = Counter.builder("albums.image.ingest").tag("result", "accepted").register(meterRegistry);
+        this.rejected = Counter.builder("albums.image.ingest").tag("result", "rejected").register(meterRegistry);
+    }
+
+    // Stores the upload as <baseName><real extension> in directory and returns the stored file name
+    public String store(MultipartFile upload, Path directory, String baseName) {
+        // The declared size can't be trusted, but when it's already too big there's no point reading anything
+        if (upload.getSize() > maxBytes) {
+            rejected.increment();
+            throw new ImageTooLargeException("Image is larger than the " + DataSize.ofBytes(maxBytes).toMegabytes() + "MB limit");
+        }
+
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, baseName + "-", TEMP_SUFFIX);
+            ImageInfo info;
+            long size;
+            try (InputStream body = upload.getInputStream();
+                 OutputStream out = Files.newOutputStream(temp)) {
+                CopyingInputStream in = new CopyingInputStream(body, out, maxBytes);
+                info = ImageHeaderReader.read(in);
+                validate(info);
+                in.transferTo(OutputStream.nullOutputStream()); // reading is what copies the rest into temp
+                size = in.count();
+            }
+
+            String filename = baseName + info.format().extension();
+            Files.move(temp, directory.resolve(filename), ATOMIC_MOVE, REPLACE_EXISTING);
+            temp = null;
+            accepted.increment();
+            log.info("Stored {} {}x{} image {} ({} bytes)", info.format(), info.width(), info.height(), filename, size);
+            return filename;
+        } catch (InvalidImageException | ImageTooLargeException e) {
+            rejected.increment();
+            log.warn("Rejected image upload for {}: {}", baseName, e.getMessage());
+            throw e;
+        } catch (IOException e) {
+            log.error("Failed to save image for {}", baseName, e);
+            throw new RuntimeException("Unable to save image");
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    private void validate(ImageInfo info) {
+        if (info.width() <= 0 || info.height() <= 0) {
+            throw new InvalidImageException("Malformed " + info.format() + ": image has no pixels");
+        }
+        if (info.width() > maxDimension || info.height() > maxDimension) {
+            throw new ImageTooLargeException("Image is " + info.width() + "x" + info.height()
+                    + ", max is " + maxDimension + " pixels per side");
+        }
+        if (info.pixels() > maxPixels) {
+            throw new ImageTooLargeException("Image has " + info.pixels() + " pixels, max is " + maxPixels);
+        }
+    }
+
+    private static void deleteQuietly(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.warn("Could not delete temp upload {}", temp, e);
+        }
+    }
+}
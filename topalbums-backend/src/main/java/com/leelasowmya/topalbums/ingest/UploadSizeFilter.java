@@ -0,0 +1,49 @@
+package com.leelasowmya.topalbums.ingest;
+
+import com.leelasowmya.topalbums.bulkhead.EndpointClass;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Turns away cover uploads whose declared Content-Length is already over the multipart limit, before they
+// take an upload bulkhead slot and before a single body byte is read or spooled
+// Only a first line of defence: uploads without a Content-Length (chunked) or lying about it are still cut off
+// by the multipart limits while being read, and a body under the limit is spooled in full by the multipart
+// parser before ImageIngest gets to look at its header (see ImageIngest)
+@Slf4j
+public class UploadSizeFilter extends OncePerRequestFilter {
+    private final long maxRequestBytes;
+
+    public UploadSizeFilter(DataSize maxRequestSize) {
+        this.maxRequestBytes = maxRequestSize.toBytes();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return EndpointClass.classify(request) != EndpointClass.UPLOAD;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long declared = request.getContentLengthLong(); // -1 when not declared
+        if (declared > maxRequestBytes) {
+            log.warn("Rejecting {}-byte upload to {} without reading it (limit {} bytes)",
+                    declared, request.getRequestURI(), maxRequestBytes);
+            response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Upload is larger than the "
+                    + DataSize.ofBytes(maxRequestBytes).toMegabytes() + "MB limit\"}");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
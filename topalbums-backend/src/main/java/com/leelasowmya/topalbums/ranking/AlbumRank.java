@@ -0,0 +1,7 @@
+package com.leelasowmya.topalbums.ranking;
+
+import com.leelasowmya.topalbums.domain.Album;
+
+// One entry of GET /albums/top: the album and how many plays it had in the requested window
+public record AlbumRank(Album album, long plays) {
+}
@@ -0,0 +1,216 @@
+package com.leelasowmya.topalbums.ranking;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumPlayCount;
+import com.leelasowmya.topalbums.repository.AlbumPlayCountRepository;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Counts album plays without touching the database per play:
+// - each play increments a striped in-memory counter (LongAdder) for its album and the hour it was played in,
+//   so hot albums don't contend on one lock and a play counted just before the hour turns stays in that hour
+// - every flush interval the counters are drained and written as ONE batched upsert into album_plays
+//   (one row per album per hour), so tens of thousands of plays per second become a handful of row updates
+// - the flushed deltas also feed the in-memory TopAlbumsTracker that serves GET /albums/top
+// - the tracker is periodically rebuilt from album_plays so it also reflects plays counted by other nodes
+@Slf4j
+@Service
+public class PlayCounterService {
+    // Adds the delta to the album's row for that hour, creating it if needed
+    // Plays for albums that no longer exist (or never did) are dropped by the EXISTS check
+    private static final String UPSERT_SQL = """
+            INSERT INTO album_plays (album_id, bucket_start, plays)
+            SELECT ?, ?, ? WHERE EXISTS (SELECT 1 FROM albums WHERE id = ?)
+            ON CONFLICT (album_id, bucket_start) DO UPDATE SET plays = album_plays.plays + EXCLUDED.plays
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AlbumRepository albumRepository;
+    private final AlbumPlayCountRepository playCountRepository;
+    private final TransactionTemplate transaction;
+    private final Clock clock;
+
+    // Counters plays are added to right now; swapped for a fresh map on every flush
+    private volatile ConcurrentHashMap<PlayKey, LongAdder> pending = new ConcurrentHashMap<>();
+    // The map swapped out by the previous flush - drained once more to pick up plays from threads that
+    // grabbed the old map just before the swap
+    private ConcurrentHashMap<PlayKey, LongAdder> retiring = new ConcurrentHashMap<>();
+    // Replaced wholesale by resync(), so readers never see a half-built ranking
+    private volatile TopAlbumsTracker tracker;
+
+    private final Counter playsRecorded;
+    private final Counter rowsUpserted;
+
+    // One album's plays in one hour (UTC), the hour as a count since the epoch so recordPlay stays cheap
+    record PlayKey(String albumId, long epochHour) {
+        LocalDateTime bucketStart() {
+            return LocalDateTime.ofEpochSecond(epochHour * HOUR_SECONDS, 0, ZoneOffset.UTC);
+        }
+    }
+
+    private static final long HOUR_SECONDS = 3600;
+    private static final Comparator<PlayKey> LOCK_ORDER =
+            Comparator.comparing(PlayKey::albumId).thenComparingLong(PlayKey::epochHour);
+
+    @Autowired
+    public PlayCounterService(JdbcTemplate jdbcTemplate, AlbumRepository albumRepository,
+                              AlbumPlayCountRepository playCountRepository,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this(jdbcTemplate, albumRepository, playCountRepository, transactionManager, Clock.systemUTC(), meterRegistry);
+    }
+
+    PlayCounterService(JdbcTemplate jdbcTemplate, AlbumRepository albumRepository,
+                       AlbumPlayCountRepository playCountRepository, PlatformTransactionManager transactionManager,
+                       Clock clock, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.albumRepository = albumRepository;
+        this.playCountRepository = playCountRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.tracker = new TopAlbumsTracker(now());
+        this.playsRecorded = Counter.builder("albums.plays.recorded").register(meterRegistry);
+        this.rowsUpserted = Counter.builder("albums.plays.rows.upserted")
+                .description("album_plays rows written by batched flushes").register(meterRegistry);
+    }
+
+    // Hot path - no locks, no I/O
+    public void recordPlay(String albumId) {
+        PlayKey key = new PlayKey(albumId, clock.millis() / 1000 / HOUR_SECONDS);
+        pending.computeIfAbsent(key, k -> new LongAdder()).increment();
+        playsRecorded.increment();
+    }
+
+    public List<AlbumRank> getTopAlbums(RankingWindow window, int limit) {
+        TopAlbumsTracker current = tracker;
+        current.advanceTo(now());
+        List<TopAlbumsTracker.Ranked> top = current.top(window, limit);
+
+        // One query for the album details of the whole top list
+        Map<String, Album> albums = albumRepository.findAllById(top.stream().map(TopAlbumsTracker.Ranked::albumId).toList())
+                .stream().collect(Collectors.toMap(Album::getId, Function.identity()));
+        List<AlbumRank> result = new ArrayList<>(top.size());
+        for (TopAlbumsTracker.Ranked ranked : top) {
+            Album album = albums.get(ranked.albumId());
+            if (album != null) { // deleted since it was counted
+                result.add(new AlbumRank(album, ranked.plays()));
+            }
+        }
+        return result;
+    }
+
+    // Scheduled tasks share Spring's single scheduler thread, so flush() and resync() never overlap;
+    // synchronized keeps that true even if the scheduler pool is ever made bigger
+    @Scheduled(fixedDelayString = "${app.plays.flush-interval:5s}")
+    public synchronized void flush() {
+        ConcurrentHashMap<PlayKey, LongAdder> swappedOut = pending;
+        pending = new ConcurrentHashMap<>();
+
+        Map<PlayKey, Long> deltas = new HashMap<>();
+        drainInto(retiring, deltas);
+        drainInto(swappedOut, deltas);
+        retiring = swappedOut;
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        // Rows go out in album id (then hour) order, so every node locks album_plays rows in the same order and
+        // two nodes flushing the same albums wait on each other instead of deadlocking. A deadlock (or any other
+        // error) still rolls the whole batch back, and the counts are put back below to be retried
+        List<Map.Entry<PlayKey, Long>> rows = new ArrayList<>(deltas.entrySet());
+        rows.sort(Map.Entry.comparingByKey(LOCK_ORDER));
+        // The whole batch is one transaction, so it's either all written or not at all - without it a failure
+        // halfway through left the first rows committed, and retrying all of them counted those plays twice
+        int[] completion = { TransactionSynchronization.STATUS_ROLLED_BACK };
+        int[][] results;
+        try {
+            results = transaction.execute(status -> {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int outcome) {
+                        completion[0] = outcome;
+                    }
+                });
+                return jdbcTemplate.batchUpdate(UPSERT_SQL, rows, rows.size(), (statement, row) -> {
+                    statement.setString(1, row.getKey().albumId());
+                    statement.setTimestamp(2, Timestamp.valueOf(row.getKey().bucketStart()));
+                    statement.setLong(3, row.getValue());
+                    statement.setString(4, row.getKey().albumId());
+                });
+            });
+        } catch (RuntimeException e) {
+            if (completion[0] == TransactionSynchronization.STATUS_ROLLED_BACK) {
+                // Nothing was written: put the counts back so the next flush retries them instead of losing plays
+                log.error("Failed to flush play counts, will retry", e);
+                deltas.forEach((key, plays) -> pending.computeIfAbsent(key, k -> new LongAdder()).add(plays));
+            } else {
+                // The commit failed in a way that doesn't say whether it happened - retrying could double count
+                log.error("Play count flush may or may not have been committed, dropping {} rows of plays",
+                        rows.size(), e);
+            }
+            return;
+        }
+
+        int[] updateCounts = results != null && results.length > 0 ? results[0] : new int[0];
+        TopAlbumsTracker current = tracker;
+        for (int i = 0; i < rows.size(); i++) {
+            // 0 means the EXISTS check dropped it; SUCCESS_NO_INFO (-2) still means it was written
+            if (i >= updateCounts.length || updateCounts[i] != 0) {
+                PlayKey key = rows.get(i).getKey();
+                current.add(key.albumId(), key.bucketStart(), rows.get(i).getValue());
+                rowsUpserted.increment();
+            }
+        }
+        log.info("Flushed {} plays in {} album-hours", deltas.values().stream().mapToLong(Long::longValue).sum(), rows.size());
+    }
+
+    // Rebuilds the ranking from album_plays - runs at startup and then periodically to pick up other nodes' plays
+    @Scheduled(fixedDelayString = "${app.plays.resync-interval:5m}")
+    public synchronized void resync() {
+        LocalDateTime now = now();
+        TopAlbumsTracker rebuilt = new TopAlbumsTracker(now);
+        LocalDateTime since = TopAlbumsTracker.hourOf(now).minusHours(RankingWindow.longest().hours() - 1);
+        List<AlbumPlayCount> rows = playCountRepository.findByBucketStartGreaterThanEqual(since);
+        for (AlbumPlayCount row : rows) {
+            rebuilt.add(row.getAlbumId(), row.getBucketStart(), row.getPlays());
+        }
+        tracker = rebuilt;
+        log.info("Rebuilt top albums ranking from {} hourly rows", rows.size());
+    }
+
+    private static void drainInto(Map<PlayKey, LongAdder> counters, Map<PlayKey, Long> deltas) {
+        counters.forEach((key, adder) -> {
+            long plays = adder.sumThenReset();
+            if (plays > 0) {
+                deltas.merge(key, plays, Long::sum);
+            }
+        });
+    }
+
+    private LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+}
@@ -0,0 +1,43 @@
+package com.leelasowmya.topalbums.ranking;
+
+import com.leelasowmya.topalbums.exception.InvalidRequestException;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// Sliding windows GET /albums/top can rank over, e.g. ?window=24h
+public enum RankingWindow {
+    HOUR("1h", Duration.ofHours(1)),
+    DAY("24h", Duration.ofHours(24)),
+    WEEK("7d", Duration.ofDays(7)),
+    MONTH("30d", Duration.ofDays(30));
+
+    private final String param;
+    private final Duration length;
+
+    RankingWindow(String param, Duration length) {
+        this.param = param;
+        this.length = length;
+    }
+
+    public Duration length() {
+        return length;
+    }
+
+    // Number of hourly buckets the window covers, including the current (partial) hour
+    public long hours() {
+        return length.toHours();
+    }
+
+    public static RankingWindow fromParam(String param) {
+        return Arrays.stream(values())
+                .filter(window -> window.param.equalsIgnoreCase(param))
+                .findFirst()
+                .orElseThrow(() -> new InvalidRequestException("Unknown window '" + param + "'. Allowed: 1h, 24h, 7d, 30d"));
+    }
+
+    // The longest window decides how far back play counts have to be kept in memory
+    public static RankingWindow longest() {
+        return MONTH;
+    }
+}
@@ -0,0 +1,113 @@
+package com.leelasowmya.topalbums.ranking;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// In-memory ranking of albums by plays for each RankingWindow, kept up to date incrementally:
+// - flushed play deltas are added to the hour they happened in and to every window that hour is part of
+// - as time moves on, hours falling out of a window are subtracted from it again
+// Each window keeps its albums in a TreeSet ordered by plays, so the top K is just the first K entries -
+// no sorting of the whole catalog per request
+// Thread safe: all methods are synchronized (writes come from the periodic flush only, reads are O(K))
+public class TopAlbumsTracker {
+    private static final Comparator<Ranked> BY_PLAYS_DESC =
+            Comparator.comparingLong(Ranked::plays).reversed().thenComparing(Ranked::albumId);
+
+    // Plays per album per hour, for as long as the longest window needs them
+    private final TreeMap<LocalDateTime, Map<String, Long>> buckets = new TreeMap<>();
+    private final Map<RankingWindow, WindowRanking> windows = new EnumMap<>(RankingWindow.class);
+    // Start of the current hour as of the last update - windows are relative to it
+    private LocalDateTime currentHour;
+
+    public record Ranked(String albumId, long plays) {
+    }
+
+    public TopAlbumsTracker(LocalDateTime now) {
+        this.currentHour = hourOf(now);
+        for (RankingWindow window : RankingWindow.values()) {
+            windows.put(window, new WindowRanking());
+        }
+    }
+
+    public static LocalDateTime hourOf(LocalDateTime time) {
+        return time.withMinute(0).withSecond(0).withNano(0);
+    }
+
+    // Adds plays that happened during the hour starting at bucketStart
+    public synchronized void add(String albumId, LocalDateTime bucketStart, long plays) {
+        if (plays <= 0) {
+            return;
+        }
+        advanceTo(bucketStart); // plays may belong to an hour the tracker hasn't reached yet
+        if (!isInWindow(bucketStart, RankingWindow.longest())) {
+            return; // already outside every window
+        }
+        buckets.computeIfAbsent(bucketStart, hour -> new HashMap<>()).merge(albumId, plays, Long::sum);
+        for (Map.Entry<RankingWindow, WindowRanking> entry : windows.entrySet()) {
+            if (isInWindow(bucketStart, entry.getKey())) {
+                entry.getValue().adjust(albumId, plays);
+            }
+        }
+    }
+
+    // Moves the windows forward to the hour containing now, dropping hours that fall out of each window
+    public synchronized void advanceTo(LocalDateTime now) {
+        LocalDateTime newHour = hourOf(now);
+        if (!newHour.isAfter(currentHour)) {
+            return;
+        }
+        LocalDateTime previousHour = currentHour;
+        currentHour = newHour;
+        for (Map.Entry<RankingWindow, WindowRanking> entry : windows.entrySet()) {
+            long hours = entry.getKey().hours();
+            // Hours that were inside the window before but aren't any more
+            LocalDateTime oldStart = previousHour.minusHours(hours - 1);
+            LocalDateTime newStart = newHour.minusHours(hours - 1);
+            for (Map<String, Long> expired : buckets.subMap(oldStart, true, newStart, false).values()) {
+                expired.forEach((albumId, plays) -> entry.getValue().adjust(albumId, -plays));
+            }
+        }
+        buckets.headMap(newHour.minusHours(RankingWindow.longest().hours() - 1), false).clear();
+    }
+
+    public synchronized List<Ranked> top(RankingWindow window, int limit) {
+        List<Ranked> result = new ArrayList<>(limit);
+        Iterator<Ranked> iterator = windows.get(window).ranking.iterator();
+        while (iterator.hasNext() && result.size() < limit) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    private boolean isInWindow(LocalDateTime bucketStart, RankingWindow window) {
+        return !bucketStart.isBefore(currentHour.minusHours(window.hours() - 1));
+    }
+
+    // Album -> plays map plus the same data ordered by plays
+    private static class WindowRanking {
+        private final Map<String, Long> plays = new HashMap<>();
+        private final TreeSet<Ranked> ranking = new TreeSet<>(BY_PLAYS_DESC);
+
+        void adjust(String albumId, long delta) {
+            Long previous = plays.get(albumId);
+            long updated = (previous == null ? 0 : previous) + delta;
+            if (previous != null) {
+                ranking.remove(new Ranked(albumId, previous));
+            }
+            if (updated > 0) {
+                plays.put(albumId, updated);
+                ranking.add(new Ranked(albumId, updated));
+            } else {
+                plays.remove(albumId);
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.leelasowmya.topalbums.repository;
+
+import com.leelasowmya.topalbums.domain.AlbumPlayCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AlbumPlayCountRepository extends JpaRepository<AlbumPlayCount, AlbumPlayCount.Key> {
+    // Hourly buckets still inside the ranking windows - used to (re)build the in-memory top lists
+    List<AlbumPlayCount> findByBucketStartGreaterThanEqual(LocalDateTime since);
+}
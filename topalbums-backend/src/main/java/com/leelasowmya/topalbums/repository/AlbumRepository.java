@@ -2,11 +2,70 @@ package com.leelasowmya.topalbums.repository;
 
 import com.leelasowmya.topalbums.domain.Album;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface AlbumRepository extends JpaRepository<Album, String> {
+// JpaSpecificationExecutor adds findAll(Specification, Pageable) for the filtered listing (see AlbumSpecifications)
+public interface AlbumRepository extends JpaRepository<Album, String>, JpaSpecificationExecutor<Album> {
     Optional<Album> findById(String id);
+
+    // Just id + version for a batch of albums - used to spot stale entries in the node-local AlbumCache
+    @Query("select a.id as id, a.version as version from Album a where a.id in :ids")
+    List<AlbumVersion> findVersionsByIdIn(@Param("ids") Collection<String> ids);
+
+    // Photo references for the albums whose IDs match stored file names - used by PhotoStorageReconciler
+    @Query("select a.id as id, a.photoUrl as photoUrl, a.photoMissing as photoMissing from Album a where a.id in :ids")
+    List<AlbumPhoto> findPhotosByIdIn(@Param("ids") Collection<String> ids);
+
+    // Next page of albums that reference a photo, in id order after afterId (keyset paging, no offset scans)
+    @Query("select a.id as id, a.photoUrl as photoUrl, a.photoMissing as photoMissing from Album a "
+            + "where a.photoUrl is not null and a.id > :afterId order by a.id")
+    List<AlbumPhoto> findPhotosAfter(@Param("afterId") String afterId, Pageable page);
+
+    // "versioned" bumps @Version too, so AlbumCacheVersionCheck notices the change like any other update
+    // One album at a time: each change needs its own change sequence number
+    @Transactional
+    @Modifying
+    @Query("update versioned Album a set a.photoMissing = :missing, a.changeSeq = :changeSeq where a.id = :id")
+    int updatePhotoMissing(@Param("id") String id, @Param("missing") boolean missing, @Param("changeSeq") long changeSeq);
+
+    // Inserts and updates in the change feed window (after, upTo], oldest first - a range scan on idx_albums_change_seq
+    @Query("select a from Album a where a.changeSeq > :after and a.changeSeq <= :upTo order by a.changeSeq")
+    List<Album> findChanges(@Param("after") long after, @Param("upTo") long upTo, Pageable page);
+
+    @Query("select max(a.changeSeq) from Album a")
+    Long findMaxChangeSeq();
+
+    // Albums written before the change feed existed (or loaded by a snapshot restore) - see ChangeFeedService
+    @Query("select a.id from Album a where a.changeSeq is null order by a.id")
+    List<String> findIdsWithoutChangeSeq(Pageable page);
+
+    // Clears the persistence context so albums already loaded in this transaction are re-read with their number
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update versioned Album a set a.changeSeq = :changeSeq where a.id = :id")
+    int assignChangeSeq(@Param("id") String id, @Param("changeSeq") long changeSeq);
+
+    interface AlbumPhoto {
+        String getId();
+
+        String getPhotoUrl();
+
+        boolean isPhotoMissing();
+    }
+
+    interface AlbumVersion {
+        String getId();
+
+        Long getVersion();
+    }
 }
@@ -0,0 +1,81 @@
+package com.leelasowmya.topalbums.repository;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumFilter;
+import com.leelasowmya.topalbums.exception.InvalidRequestException;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Builds the WHERE clause and ORDER BY for GET /albums from an AlbumFilter and the requested sort
+// Only plain equality / range predicates on the raw columns are used (no lower(), no leading-% LIKE),
+// so the database can answer them from the indexes declared on Album
+// Requests no index can serve are rejected with 400 rather than run as a scan + sort of the whole table:
+// hasPhoto on its own, and a sort other than the default one without an artist, genre or year filter
+// to narrow the rows first
+public final class AlbumSpecifications {
+    // Fields clients may sort GET /albums by - anything else is rejected with 400
+    private static final Set<String> SORTABLE_FIELDS = Set.of("name", "artist", "genre", "releaseYear", "createdTime");
+
+    private AlbumSpecifications() {
+    }
+
+    public static Specification<Album> matching(AlbumFilter filter) {
+        if (filter.hasPhoto() != null && !isNarrowed(filter)) {
+            throw new InvalidRequestException("hasPhoto must be combined with artist, genre, yearFrom or yearTo");
+        }
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.artist() != null) {
+                predicates.add(cb.equal(root.get("artist"), filter.artist()));
+            }
+            if (filter.genre() != null) {
+                predicates.add(cb.equal(root.get("genre"), filter.genre()));
+            }
+            if (filter.yearFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("releaseYear"), filter.yearFrom()));
+            }
+            if (filter.yearTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("releaseYear"), filter.yearTo()));
+            }
+            if (filter.hasPhoto() != null) {
+                // Not indexed on purpose - it's only ever applied to the rows one of the filters above selected
+                predicates.add(filter.hasPhoto() ? cb.isNotNull(root.get("photoUrl")) : cb.isNull(root.get("photoUrl")));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // Turns ["artist", "-releaseYear"] into a Sort, rejecting anything not in SORTABLE_FIELDS
+    // The id is always added last so paging is stable when the requested fields have ties
+    // The default (createdTime) order is read straight off idx_albums_created_time; any other order needs a
+    // filter, so only the matching rows are sorted
+    public static Sort orderedBy(AlbumFilter filter, List<String> sort) {
+        if (sort == null || sort.isEmpty()) {
+            return Sort.by("createdTime").and(Sort.by("id"));
+        }
+        if (!isNarrowed(filter)) {
+            throw new InvalidRequestException("sort must be combined with artist, genre, yearFrom or yearTo");
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        for (String field : sort) {
+            boolean descending = field.startsWith("-");
+            String property = descending ? field.substring(1) : field;
+            if (!SORTABLE_FIELDS.contains(property)) {
+                throw new InvalidRequestException("Cannot sort by '" + property + "'. Allowed: " + SORTABLE_FIELDS);
+            }
+            orders.add(descending ? Sort.Order.desc(property) : Sort.Order.asc(property));
+        }
+        orders.add(Sort.Order.asc("id"));
+        return Sort.by(orders);
+    }
+
+    // Whether the filter has a predicate one of Album's indexes can answer
+    private static boolean isNarrowed(AlbumFilter filter) {
+        return filter.artist() != null || filter.genre() != null || filter.yearFrom() != null || filter.yearTo() != null;
+    }
+}
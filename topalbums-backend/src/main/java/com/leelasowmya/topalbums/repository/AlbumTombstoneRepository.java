@@ -0,0 +1,27 @@
+package com.leelasowmya.topalbums.repository;
+
+import com.leelasowmya.topalbums.domain.AlbumTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AlbumTombstoneRepository extends JpaRepository<AlbumTombstone, Long> {
+    // Deletes in the change feed window (after, upTo], oldest first - a range scan on the primary key
+    @Query("select t from AlbumTombstone t where t.changeSeq > :after and t.changeSeq <= :upTo order by t.changeSeq")
+    List<AlbumTombstone> findChanges(@Param("after") long after, @Param("upTo") long upTo, Pageable page);
+
+    // Newest tombstone that is past retention, or null if none are
+    @Query("select max(t.changeSeq) from AlbumTombstone t where t.deletedTime < :cutoff")
+    Long findLastChangeSeqDeletedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("delete from AlbumTombstone t where t.changeSeq <= :changeSeq")
+    int deleteThrough(@Param("changeSeq") long changeSeq);
+}
@@ -0,0 +1,38 @@
+package com.leelasowmya.topalbums.repository;
+
+import com.leelasowmya.topalbums.domain.ChangeLogState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ChangeLogStateRepository extends JpaRepository<ChangeLogState, Integer> {
+    // Moves last_seq on by count; the UPDATE's row lock is held until the caller's transaction ends, so
+    // reserve(0) just takes the lock. Returns 0 if the row doesn't exist yet
+    @Modifying
+    @Query("update ChangeLogState s set s.lastSeq = s.lastSeq + :count where s.id = " + ChangeLogState.ID)
+    int reserve(@Param("count") long count);
+
+    // Both read straight from the database, never from the persistence context (reserve() bypasses it)
+    @Query("select s.lastSeq from ChangeLogState s where s.id = " + ChangeLogState.ID)
+    Long findLastSeq();
+
+    @Query("select s.lastSeq as lastSeq, s.compactedThrough as compactedThrough from ChangeLogState s "
+            + "where s.id = " + ChangeLogState.ID)
+    Optional<ChangeLogPosition> findPosition();
+
+    @Modifying
+    @Query("update ChangeLogState s set s.compactedThrough = :through "
+            + "where s.id = " + ChangeLogState.ID + " and s.compactedThrough < :through")
+    int markCompactedThrough(@Param("through") long through);
+
+    interface ChangeLogPosition {
+        long getLastSeq();
+
+        long getCompactedThrough();
+    }
+}
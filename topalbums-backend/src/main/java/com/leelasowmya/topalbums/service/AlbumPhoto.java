@@ -0,0 +1,71 @@
+package com.leelasowmya.topalbums.service;
+
+import com.leelasowmya.topalbums.ingest.ImageFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+// A cover image ready to be written to a response, from one of two places:
+// - cached: a view of ImageCache's off-heap copy (popular covers)
+// - streamed: the open file, copied to the client through a small buffer (everything else) - nothing is
+//   mapped or copied in full per request, so a crawler walking every cover costs no more than the bytes it reads
+// Must be closed once written (it may hold an open file)
+public final class AlbumPhoto implements Closeable {
+    private final ByteBuffer cached;
+    private final InputStream file;
+    private final long size;
+    // From the image's own magic bytes; null if it isn't a format we recognise (files older than upload checks)
+    private final ImageFormat format;
+
+    private AlbumPhoto(ByteBuffer cached, InputStream file, long size, ImageFormat format) {
+        this.cached = cached;
+        this.file = file;
+        this.size = size;
+        this.format = format;
+    }
+
+    public static AlbumPhoto cached(ByteBuffer image) {
+        return new AlbumPhoto(image, null, image.remaining(), ImageFormat.sniff(image));
+    }
+
+    public static AlbumPhoto streamed(InputStream file, long size, ImageFormat format) {
+        return new AlbumPhoto(null, file, size, format);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public ImageFormat format() {
+        return format;
+    }
+
+    public boolean isCached() {
+        return cached != null;
+    }
+
+    // Covers are replaced by an atomic move (see ImageIngest), so an open file never changes while it's read
+    public void writeTo(OutputStream out) throws IOException {
+        if (cached == null) {
+            file.transferTo(out);
+            return;
+        }
+        ByteBuffer image = cached.duplicate();
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (image.hasRemaining()) {
+            channel.write(image);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+}
@@ -1,49 +1,146 @@
 package com.leelasowmya.topalbums.service;
 
+import com.leelasowmya.topalbums.cache.AlbumCache;
+import com.leelasowmya.topalbums.cache.CacheInvalidationBus;
+import com.leelasowmya.topalbums.cache.ImageCache;
+import com.leelasowmya.topalbums.cache.SingleFlight;
+import com.leelasowmya.topalbums.changes.ChangeFeedService;
 import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumFilter;
 import com.leelasowmya.topalbums.exception.AlbumNotFoundException;
+import com.leelasowmya.topalbums.exception.InvalidRequestException;
+import com.leelasowmya.topalbums.exception.PhotoNotFoundException;
+import com.leelasowmya.topalbums.ingest.ImageFormat;
+import com.leelasowmya.topalbums.ingest.ImageIngest;
 import com.leelasowmya.topalbums.repository.AlbumRepository;
+import com.leelasowmya.topalbums.repository.AlbumSpecifications;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Optional;
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import static com.leelasowmya.topalbums.constant.Constant.PHOTO_DIRECTORY;
 import static com.leelasowmya.topalbums.constant.Constant.PHOTO_PUBLIC_URL;
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static com.leelasowmya.topalbums.constant.Constant.SINGLE_FLIGHT_TIMEOUT;
+import static java.nio.file.StandardOpenOption.READ;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 @Transactional(rollbackOn = Exception.class)
 public class AlbumService {
     private final AlbumRepository albumRepository;
+    private final AlbumCache albumCache;
+    private final ImageCache imageCache;
+    // Every write goes through here so all nodes' caches drop the old data
+    private final CacheInvalidationBus invalidationBus;
+    private final ImageIngest imageIngest;
+    // Numbers every write (and records deletes) for GET /albums/changes
+    private final ChangeFeedService changeFeed;
+
+    // Concurrent reads of the same album / image share one DB query / file read (see SingleFlight)
+    private final SingleFlight<String, Album> albumLoads;
+    private final SingleFlight<String, ByteBuffer> photoLoads;
+
+    private static final Pattern YEAR_PATTERN = Pattern.compile(Album.YEAR_REGEX);
 
     @Value("${app.base-url}")
     private String baseUrl;
 
-    public Page<Album> getAllAlbums(int page, int size) {
-        log.info("Fetching all albums with page={} and size={}", page, size);
-        Page<Album> result = albumRepository.findAll(PageRequest.of(page, size, Sort.by("createdTime")));
+    // Set by Spring from app.photo-directory; the default only matters when the service is built by hand
+    @Value("${app.photo-directory}")
+    private String photoDirectory = PHOTO_DIRECTORY;
+
+    public AlbumService(AlbumRepository albumRepository, AlbumCache albumCache, ImageCache imageCache,
+                        CacheInvalidationBus invalidationBus, ImageIngest imageIngest, ChangeFeedService changeFeed,
+                        MeterRegistry meterRegistry) {
+        this.albumRepository = albumRepository;
+        this.albumCache = albumCache;
+        this.imageCache = imageCache;
+        this.invalidationBus = invalidationBus;
+        this.imageIngest = imageIngest;
+        this.changeFeed = changeFeed;
+        this.albumLoads = new SingleFlight<>("album", SINGLE_FLIGHT_TIMEOUT, meterRegistry);
+        this.photoLoads = new SingleFlight<>("photo", SINGLE_FLIGHT_TIMEOUT, meterRegistry);
+    }
+
+    // Filtered + sorted listing; sort entries are field names, prefixed with "-" for descending
+    // e.g. sort=[artist, -releaseYear]. An empty sort keeps the old createdTime order
+    public Page<Album> getAllAlbums(AlbumFilter filter, List<String> sort, int page, int size) {
+        log.info("Fetching albums with filter={}, sort={}, page={}, size={}", filter, sort, page, size);
+        validateYear(filter.yearFrom());
+        validateYear(filter.yearTo());
+        Page<Album> result = albumRepository.findAll(AlbumSpecifications.matching(filter),
+                PageRequest.of(page, size, AlbumSpecifications.orderedBy(filter, sort)));
         log.info("Retrieved {} albums", result.getTotalElements());
         return result;
     }
 
+    // Read-only lookup used by GET /albums/{id}; served from the node-local AlbumCache when possible and
+    // concurrent misses for the same ID are coalesced, so the returned Album is shared and must not be modified
+    // SUPPORTS overrides the class-level transaction: a cache hit, or a caller waiting on another request's load,
+    // must not check out a pooled connection. Only the leader's findById runs in a (repository) transaction
+    @Transactional(Transactional.TxType.SUPPORTS)
     public Album getAlbum(String id) {
         log.info("Fetching album with ID: {}", id);
+        Album cached = albumCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        return albumLoads.load(id, () -> {
+            long generation = albumCache.currentGeneration();
+            Album album = findAlbum(id);
+            albumCache.put(album, generation);
+            return album;
+        });
+    }
+
+    // Returns a stored cover image for the caller to write out (and close): from the hot image cache, copied
+    // into it now if the cache would admit it, otherwise streamed from the open file
+    // Concurrent misses for an admitted file are coalesced into one copy; every caller gets its own duplicate()
+    // Never touches the database, so it runs outside any transaction (no pooled connection held while reading)
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public AlbumPhoto getAlbumPhoto(String filename) {
+        ByteBuffer cached = imageCache.get(filename);
+        if (cached != null) {
+            return AlbumPhoto.cached(cached);
+        }
+        log.info("Reading image file: {}", filename);
+        Path imagePath = Paths.get(photoDirectory, filename);
+        FileChannel channel = openPhoto(imagePath, filename);
+        try {
+            long size = channel.size();
+            if (!imageCache.wouldAdmit(filename, size)) {
+                // Not popular (yet): handed over still open and streamed - the file is never mapped or copied whole
+                // The header is read at an absolute offset, so the stream still starts at byte 0
+                ByteBuffer head = ByteBuffer.allocate(ImageFormat.SNIFF_BYTES);
+                channel.read(head, 0);
+                return AlbumPhoto.streamed(Channels.newInputStream(channel), size, ImageFormat.sniff(head.flip()));
+            }
+            channel.close();
+        } catch (IOException e) {
+            closeQuietly(channel);
+            log.error("Failed to read image {}", filename, e);
+            throw new RuntimeException("Unable to read image");
+        }
+        return AlbumPhoto.cached(photoLoads.load(filename, () -> cachePhoto(imagePath, filename)).duplicate());
+    }
+
+    // Loads the album for this caller only - used by the write paths, which modify the returned entity
+    private Album findAlbum(String id) {
         return albumRepository.findById(id)
                 .orElseThrow(() -> {
                     log.error("Album with ID {} not found", id);
@@ -53,6 +150,7 @@ public class AlbumService {
 
     public Album createAlbum(Album album) {
         log.info("Creating new album: {}", album.getName());
+        album.setChangeSeq(changeFeed.nextChangeSeq());
         Album savedAlbum = albumRepository.save(album);
         log.info("Album created successfully with ID: {}", savedAlbum.getId());
         return savedAlbum;
@@ -60,72 +158,103 @@ public class AlbumService {
 
     public Album updateAlbum(String id, Album album) {
         log.info("Updating album with ID: {}", id);
-        Album existingAlbum = getAlbum(id);
+        Album existingAlbum = findAlbum(id);
         // Update the fields of the existing album with the new data
         existingAlbum.setName(album.getName());
         existingAlbum.setArtist(album.getArtist());
         existingAlbum.setReleaseYear(album.getReleaseYear());
         existingAlbum.setGenre(album.getGenre());
         existingAlbum.setAlbumUrl(album.getAlbumUrl());
+        existingAlbum.setChangeSeq(changeFeed.nextChangeSeq());
         Album updatedAlbum = albumRepository.save(existingAlbum);
+        invalidationBus.albumChanged(id);
         log.info("Album with ID {} updated successfully", updatedAlbum.getId());
         return updatedAlbum;
     }
 
     public void deleteAlbum(String id) {
         log.info("Attempting to delete album with ID: {}", id);
-        Album album = getAlbum(id); // will log and throw if not found
+        Album album = findAlbum(id); // will log and throw if not found
         albumRepository.delete(album);
+        changeFeed.recordDelete(id);
+        invalidationBus.albumChanged(id);
+        invalidationBus.photoChanged(album.getPhotoUrl());
         log.info("Album with ID {} deleted successfully", id);
     }
 
     public String uploadPhoto(String id, MultipartFile file) {
         log.info("Uploading photo for album ID: {}", id);
-        Album album = getAlbum(id);
-        String photoUrl = photoFunction.apply(id, file);
+        Album album = findAlbum(id);
+        String previousPhotoUrl = album.getPhotoUrl();
+        String photoUrl = storePhoto(id, file);
         album.setPhotoUrl(photoUrl);
+        album.setPhotoMissing(false);
+        album.setChangeSeq(changeFeed.nextChangeSeq());
         albumRepository.save(album);
+        // Drop both the old file (it may have had another extension) and the new one from every node's cache
+        invalidationBus.albumChanged(id);
+        invalidationBus.photoChanged(previousPhotoUrl);
+        invalidationBus.photoChanged(photoUrl);
         log.info("Photo uploaded and URL saved to album: {}", photoUrl);
         return photoUrl;
     }
 
-    // Extracts file extension, defaulting to ".png" if missing
-    // Function<String, String> f = input -> someSingleExpression;
-    // Takes 1 input (String fileName) and returns a String (the extension)
-    private final Function<String, String> fileExtension = filename ->
-            Optional.ofNullable(filename)
-                    .filter(name -> name.contains("."))
-                    //if there are multiple dots - hence lastIndexOf as we need the last "."
-                    .map(name -> "." + name.substring(name.lastIndexOf(".") + 1))
-                    .orElse(".png");
+    // Popular image: copy it once into a direct buffer and keep it in the cache
+    private ByteBuffer cachePhoto(Path imagePath, String filename) {
+        long generation = imageCache.currentGeneration();
+        try (FileChannel channel = openPhoto(imagePath, filename)) {
+            ByteBuffer image = ByteBuffer.allocateDirect((int) channel.size());
+            while (image.hasRemaining()) {
+                if (channel.read(image) < 0) {
+                    break; // file shrank while we were reading it
+                }
+            }
+            image.flip();
+            imageCache.put(filename, image, generation);
+            return image.asReadOnlyBuffer();
+        } catch (IOException e) {
+            log.error("Failed to read image {}", filename, e);
+            throw new RuntimeException("Unable to read image");
+        }
+    }
 
-    // Handles photo saving and URL generation
-    // Takes 2 inputs (String id, MultipartFile image) and returns a String (the image URL)
-    private final BiFunction<String, MultipartFile, String> photoFunction = (id, image) -> {
-        String extension = fileExtension.apply(image.getOriginalFilename());
-        String filename = id + extension;
-        //take the string path from PHOTO_DIRECTORY, convert it to a full absolute path, and clean it up
-        Path fileStorageLocation = Paths.get(PHOTO_DIRECTORY).toAbsolutePath().normalize();
+    private FileChannel openPhoto(Path imagePath, String filename) {
+        try {
+            return FileChannel.open(imagePath, READ);
+        } catch (NoSuchFileException e) {
+            log.error("Image file {} not found", filename);
+            throw new PhotoNotFoundException("Image " + filename + " not found");
+        } catch (IOException e) {
+            log.error("Failed to read image {}", filename, e);
+            throw new RuntimeException("Unable to read image");
+        }
+    }
 
+    private static void closeQuietly(FileChannel channel) {
         try {
-            if (!Files.exists(fileStorageLocation)) {
-                Files.createDirectories(fileStorageLocation);
-                log.info("Created directory for storing images at: {}", fileStorageLocation);
-            }
+            channel.close();
+        } catch (IOException ignored) {
+            // already failing - the original error is the one worth reporting
+        }
+    }
 
-            // Save file to disk
-            // Copies the uploaded image to the target folder, replacing it if it already exists
-            // here fileStorageLocation.resolve(filename) returns the target path as to where to upload the image on disk
-            Files.copy(image.getInputStream(), fileStorageLocation.resolve(filename), REPLACE_EXISTING);
-            log.info("Stored image for album ID {}: {}", id, filename);
+    private void validateYear(String year) {
+        if (year != null && !YEAR_PATTERN.matcher(year).matches()) {
+            throw new InvalidRequestException("Year must be 4 digits but was '" + year + "'");
+        }
+    }
 
-            // Builds and returns the public URL to access the uploaded image
-            return baseUrl + PHOTO_PUBLIC_URL + filename;
+    // Handles photo saving and URL generation
+    // Takes 2 inputs (String id, MultipartFile image) and returns a String (the image URL)
+    // The file is validated and named by ImageIngest from its real format - the client's filename is ignored
+    private String storePhoto(String id, MultipartFile image) {
+        //take the string path from app.photo-directory, convert it to a full absolute path, and clean it up
+        Path fileStorageLocation = Paths.get(photoDirectory).toAbsolutePath().normalize();
+        String filename = imageIngest.store(image, fileStorageLocation, id);
+        log.info("Stored image for album ID {}: {}", id, filename);
 
-        } catch (IOException e) {
-            log.error("Failed to save image for album ID {}", id, e);
-            throw new RuntimeException("Unable to save image");
-        }
-    };
+        // Builds and returns the public URL to access the uploaded image
+        return baseUrl + PHOTO_PUBLIC_URL + filename;
+    }
 
 }
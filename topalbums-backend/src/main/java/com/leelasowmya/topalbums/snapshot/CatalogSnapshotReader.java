@@ -0,0 +1,148 @@
+package com.leelasowmya.topalbums.snapshot;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.exception.SnapshotFormatException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+// Reads a snapshot file (see SnapshotFormat) through a read-only memory mapping
+// open() checks the magic, version and checksum up front, so a truncated or corrupted file is rejected before
+// anything is loaded from it. The file is paged in by the OS - nothing but the dictionary is copied on open
+public class CatalogSnapshotReader {
+    private final MappedByteBuffer file;
+    private final long createdAtMillis;
+    private final int albumCount;
+    private final long dictionaryOffset;
+    private final String[] dictionary;
+
+    private CatalogSnapshotReader(MappedByteBuffer file) {
+        this.file = file;
+        int size = file.capacity();
+        if (size < SnapshotFormat.HEADER_BYTES + SnapshotFormat.FOOTER_BYTES) {
+            throw new SnapshotFormatException("Snapshot is truncated (" + size + " bytes)");
+        }
+        if (file.getInt(0) != SnapshotFormat.MAGIC || file.getInt(size - 4) != SnapshotFormat.MAGIC) {
+            throw new SnapshotFormatException("Not a catalog snapshot, or truncated");
+        }
+        int version = file.getInt(4);
+        if (version != SnapshotFormat.VERSION) {
+            throw new SnapshotFormatException("Unsupported snapshot format version " + version);
+        }
+
+        int footer = size - SnapshotFormat.FOOTER_BYTES;
+        this.createdAtMillis = file.getLong(8);
+        this.dictionaryOffset = file.getLong(footer);
+        this.albumCount = file.getInt(footer + 8);
+        int dictionarySize = file.getInt(footer + 12);
+        long checksum = file.getLong(footer + 16);
+
+        CRC32 crc = new CRC32();
+        crc.update(file.slice(0, footer));
+        if (crc.getValue() != checksum) {
+            throw new SnapshotFormatException("Snapshot checksum mismatch - file is corrupted");
+        }
+        if (dictionaryOffset < SnapshotFormat.HEADER_BYTES || dictionaryOffset > footer) {
+            throw new SnapshotFormatException("Snapshot dictionary offset out of range");
+        }
+
+        ByteBuffer in = file.slice((int) dictionaryOffset, footer - (int) dictionaryOffset);
+        if (SnapshotFormat.readVarInt(in) != dictionarySize) {
+            throw new SnapshotFormatException("Snapshot dictionary size mismatch");
+        }
+        this.dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary[i] = readUtf8(in, SnapshotFormat.readVarInt(in));
+        }
+    }
+
+    public static CatalogSnapshotReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new SnapshotFormatException("Snapshot is larger than 2GB");
+            }
+            // The mapping stays valid after the channel is closed
+            return new CatalogSnapshotReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int albumCount() {
+        return albumCount;
+    }
+
+    public Instant createdAt() {
+        return Instant.ofEpochMilli(createdAtMillis);
+    }
+
+    // Decodes the albums in file order; each call gets a fresh Album the consumer may keep
+    public void forEach(Consumer<Album> consumer) {
+        ByteBuffer in = file.slice(SnapshotFormat.HEADER_BYTES, (int) dictionaryOffset - SnapshotFormat.HEADER_BYTES);
+        for (int i = 0; i < albumCount; i++) {
+            int length = SnapshotFormat.readVarInt(in);
+            int end = in.position() + length;
+            Album album = Album.builder()
+                    .id(readString(in))
+                    .name(readString(in))
+                    .artist(readDictionary(in))
+                    .genre(readDictionary(in))
+                    .releaseYear(readString(in))
+                    .albumUrl(readString(in))
+                    .photoUrl(readString(in))
+                    .createdTime(readTime(in))
+                    .version(readNullableLong(in))
+                    .photoMissing(in.position() < end && in.get() != 0) // absent in older records
+                    .changeSeq(in.position() < end ? readNullableLong(in) : null)
+                    .build();
+            in.position(end); // skips fields added by newer format versions
+            consumer.accept(album);
+        }
+    }
+
+    private String readDictionary(ByteBuffer in) {
+        int ref = SnapshotFormat.readVarInt(in);
+        if (ref == 0) {
+            return null;
+        }
+        if (ref > dictionary.length) {
+            throw new SnapshotFormatException("Dictionary reference " + ref + " out of range");
+        }
+        return dictionary[ref - 1];
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = SnapshotFormat.readVarInt(in);
+        return length == 0 ? null : readUtf8(in, length - 1);
+    }
+
+    private static String readUtf8(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDateTime readTime(ByteBuffer in) {
+        long micros = SnapshotFormat.readVarLong(in);
+        if (micros == 0) {
+            return null;
+        }
+        Instant instant = Instant.EPOCH.plus(micros - 1, ChronoUnit.MICROS);
+        return LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private static Long readNullableLong(ByteBuffer in) {
+        long value = SnapshotFormat.readVarLong(in);
+        return value == 0 ? null : value - 1;
+    }
+}
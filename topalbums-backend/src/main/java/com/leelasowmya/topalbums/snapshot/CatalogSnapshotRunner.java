@@ -0,0 +1,51 @@
+package com.leelasowmya.topalbums.snapshot;
+
+import com.leelasowmya.topalbums.changes.ChangeFeedService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Uses the catalog snapshot at startup (if one exists at app.snapshot.path):
+// - restore-on-empty: seeds an empty albums table from it (fails startup if the restore fails); restored albums
+//   keep the change sequence numbers stored in the snapshot, the change feed's counter is moved past the highest
+//   of them, and only albums without one (snapshots written before they were stored) are numbered straight after
+// - warm-on-start: pre-fills AlbumCache from it (best effort - a bad snapshot only costs a cold cache)
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CatalogSnapshotRunner implements ApplicationRunner {
+    private final CatalogSnapshotService snapshotService;
+    private final ChangeFeedService changeFeed;
+
+    @Value("${app.snapshot.restore-on-empty:false}")
+    private boolean restoreOnEmpty;
+
+    @Value("${app.snapshot.warm-on-start:true}")
+    private boolean warmOnStart;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path snapshot = snapshotService.snapshotPath();
+        if (!Files.isRegularFile(snapshot)) {
+            log.info("No catalog snapshot at {}, starting cold", snapshot);
+            return;
+        }
+        if (restoreOnEmpty && snapshotService.isCatalogEmpty()) {
+            snapshotService.restore(snapshot);
+            changeFeed.assignMissingChangeSeqs();
+        }
+        if (warmOnStart) {
+            try {
+                snapshotService.warmCache(snapshot);
+            } catch (Exception e) {
+                log.warn("Could not warm album cache from snapshot {}, starting cold", snapshot, e);
+            }
+        }
+    }
+}
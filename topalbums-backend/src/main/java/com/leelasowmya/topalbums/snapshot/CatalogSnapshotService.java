@@ -0,0 +1,197 @@
+package com.leelasowmya.topalbums.snapshot;
+
+import com.leelasowmya.topalbums.cache.AlbumCache;
+import com.leelasowmya.topalbums.cache.AlbumCacheVersionCheck;
+import com.leelasowmya.topalbums.domain.Album;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+// Exports the albums table to a compact binary snapshot (see SnapshotFormat) and loads it back:
+// - export: one consistent read of the whole table (single REPEATABLE READ transaction, streamed with a cursor)
+// - warm: memory-maps a snapshot and fills AlbumCache, then verifies the cached versions against the database
+//   in one pass so nothing stale survives - a node starts with a hot cache in seconds instead of paging findAll
+// - restore: loads a snapshot into an EMPTY albums table in one transaction (all or nothing), e.g. to seed
+//   a new environment
+@Slf4j
+@Service
+public class CatalogSnapshotService {
+    private static final int FETCH_SIZE = 1000;
+    private static final int RESTORE_BATCH_SIZE = 1000;
+
+    private static final String SELECT_SQL =
+            "SELECT id, name, artist, genre, release_year, album_url, photo_url, created_time, version, photo_missing, "
+                    + "change_seq FROM albums";
+    private static final String INSERT_SQL = "INSERT INTO albums (id, name, artist, genre, release_year, album_url, "
+            + "photo_url, created_time, version, photo_missing, change_seq) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate exportTransaction;
+    private final TransactionTemplate restoreTransaction;
+    private final AlbumCache albumCache;
+    private final AlbumCacheVersionCheck versionCheck;
+    private final Path snapshotPath;
+
+    public CatalogSnapshotService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                  AlbumCache albumCache, AlbumCacheVersionCheck versionCheck,
+                                  @Value("${app.snapshot.path}") Path snapshotPath) {
+        this.dataSource = dataSource;
+        // Own JdbcTemplate so the fetch size (rows per round trip when streaming) doesn't affect anyone else
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.exportTransaction = new TransactionTemplate(transactionManager);
+        this.exportTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.exportTransaction.setReadOnly(true);
+        this.restoreTransaction = new TransactionTemplate(transactionManager);
+        this.albumCache = albumCache;
+        this.versionCheck = versionCheck;
+        this.snapshotPath = snapshotPath;
+    }
+
+    public Path snapshotPath() {
+        return snapshotPath;
+    }
+
+    // Disabled unless app.snapshot.export-cron is set ("-" turns a Spring cron off)
+    @Scheduled(cron = "${app.snapshot.export-cron:-}")
+    public void scheduledExport() {
+        try {
+            exportTo(snapshotPath);
+        } catch (RuntimeException e) {
+            log.error("Scheduled catalog snapshot export failed", e);
+        }
+    }
+
+    // Writes every album to target, replacing it atomically; returns the number of albums written
+    public int exportTo(Path target) {
+        long start = System.nanoTime();
+        Integer count = exportTransaction.execute(status -> {
+            try (CatalogSnapshotWriter writer = CatalogSnapshotWriter.open(target)) {
+                jdbcTemplate.query(SELECT_SQL, rs -> {
+                    try {
+                        Timestamp created = rs.getTimestamp("created_time");
+                        writer.write(Album.builder()
+                                .id(rs.getString("id"))
+                                .name(rs.getString("name"))
+                                .artist(rs.getString("artist"))
+                                .genre(rs.getString("genre"))
+                                .releaseYear(rs.getString("release_year"))
+                                .albumUrl(rs.getString("album_url"))
+                                .photoUrl(rs.getString("photo_url"))
+                                .createdTime(created == null ? null : created.toLocalDateTime())
+                                .version(rs.getObject("version", Long.class))
+                                .photoMissing(rs.getBoolean("photo_missing"))
+                                .changeSeq(rs.getObject("change_seq", Long.class))
+                                .build());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                return writer.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info("Exported {} albums to catalog snapshot {} in {}ms", count, target, (System.nanoTime() - start) / 1_000_000);
+        return count == null ? 0 : count;
+    }
+
+    // Fills AlbumCache from a snapshot (up to its capacity) and then drops anything that has changed since the
+    // snapshot was taken; returns the number of albums that stayed cached
+    // Albums without a change sequence number (older snapshots) are skipped: their row may have been numbered
+    // without a version change the check would notice, and the cached copy would hide changeSeq from responses
+    public int warmCache(Path source) throws IOException {
+        long start = System.nanoTime();
+        CatalogSnapshotReader reader = CatalogSnapshotReader.open(source);
+        long generation = albumCache.currentGeneration();
+        int limit = Math.min(reader.albumCount(), albumCache.capacity());
+        int[] loaded = {0};
+        reader.forEach(album -> {
+            if (loaded[0] < limit && album.getChangeSeq() != null) {
+                albumCache.put(album, generation);
+                loaded[0]++;
+            }
+        });
+        versionCheck.verifyCachedVersions();
+        int cached = albumCache.size();
+        log.info("Warmed album cache with {} albums from snapshot taken {} in {}ms", cached, reader.createdAt(),
+                (System.nanoTime() - start) / 1_000_000);
+        return cached;
+    }
+
+    // Loads a snapshot into the albums table, which must be empty; either every album is inserted or none is
+    public int restore(Path source) throws IOException {
+        CatalogSnapshotReader reader = CatalogSnapshotReader.open(source);
+        boolean postgres = isPostgres();
+        Integer restored = restoreTransaction.execute(status -> {
+            if (postgres) {
+                // Blocks concurrent writers until commit, so "empty" still holds when the inserts land
+                jdbcTemplate.execute("LOCK TABLE albums IN SHARE ROW EXCLUSIVE MODE");
+            }
+            Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM albums", Long.class);
+            if (existing != null && existing > 0) {
+                throw new IllegalStateException("Refusing to restore snapshot: albums table has " + existing + " rows");
+            }
+            List<Album> batch = new ArrayList<>(RESTORE_BATCH_SIZE);
+            reader.forEach(album -> {
+                batch.add(album);
+                if (batch.size() == RESTORE_BATCH_SIZE) {
+                    insert(batch);
+                    batch.clear();
+                }
+            });
+            insert(batch);
+            return reader.albumCount();
+        });
+        log.info("Restored {} albums from catalog snapshot {} taken {}", restored, source, reader.createdAt());
+        return restored == null ? 0 : restored;
+    }
+
+    public boolean isCatalogEmpty() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM albums", Long.class);
+        return count == null || count == 0;
+    }
+
+    private void insert(List<Album> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (statement, album) -> {
+            statement.setString(1, album.getId());
+            statement.setString(2, album.getName());
+            statement.setString(3, album.getArtist());
+            statement.setString(4, album.getGenre());
+            statement.setString(5, album.getReleaseYear());
+            statement.setString(6, album.getAlbumUrl());
+            statement.setString(7, album.getPhotoUrl());
+            statement.setTimestamp(8, album.getCreatedTime() == null ? null : Timestamp.valueOf(album.getCreatedTime()));
+            statement.setObject(9, album.getVersion() == null ? 0L : album.getVersion());
+            statement.setBoolean(10, album.isPhotoMissing());
+            statement.setObject(11, album.getChangeSeq());
+        });
+    }
+
+    private boolean isPostgres() {
+        try {
+            return "PostgreSQL".equals(JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
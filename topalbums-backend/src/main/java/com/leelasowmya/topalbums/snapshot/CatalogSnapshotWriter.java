@@ -0,0 +1,139 @@
+package com.leelasowmya.topalbums.snapshot;
+
+import com.leelasowmya.topalbums.domain.Album;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+// Streams albums into a snapshot file (see SnapshotFormat) in one pass
+// Only the artist/genre dictionary is kept in memory; records go straight to a temp file that replaces
+// the target atomically in finish(), so readers only ever see complete snapshots
+// Usage: try (writer = open(...)) { writer.write(album)...; writer.finish(); } - closing without finish() discards
+public class CatalogSnapshotWriter implements Closeable {
+    private final Path target;
+    private final Path temp;
+    private final CRC32 crc = new CRC32();
+    private final DataOutputStream out;
+    // Reused for every record so its length can be written before it
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    private final Map<String, Integer> dictionary = new LinkedHashMap<>();
+    private long position;
+    private int albumCount;
+    private boolean finished;
+
+    private CatalogSnapshotWriter(Path target) throws IOException {
+        this.target = target;
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        this.temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        this.out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024), crc));
+        out.writeInt(SnapshotFormat.MAGIC);
+        out.writeInt(SnapshotFormat.VERSION);
+        out.writeLong(System.currentTimeMillis());
+        position = SnapshotFormat.HEADER_BYTES;
+    }
+
+    public static CatalogSnapshotWriter open(Path target) throws IOException {
+        return new CatalogSnapshotWriter(target);
+    }
+
+    public void write(Album album) throws IOException {
+        record.reset();
+        writeString(record, album.getId());
+        writeString(record, album.getName());
+        SnapshotFormat.writeVarLong(record, dictionaryRef(album.getArtist()));
+        SnapshotFormat.writeVarLong(record, dictionaryRef(album.getGenre()));
+        writeString(record, album.getReleaseYear());
+        writeString(record, album.getAlbumUrl());
+        writeString(record, album.getPhotoUrl());
+        SnapshotFormat.writeVarLong(record, album.getCreatedTime() == null ? 0 : toEpochMicros(album.getCreatedTime()) + 1);
+        SnapshotFormat.writeVarLong(record, album.getVersion() == null ? 0 : album.getVersion() + 1);
+        record.write(album.isPhotoMissing() ? 1 : 0);
+        SnapshotFormat.writeVarLong(record, album.getChangeSeq() == null ? 0 : album.getChangeSeq() + 1);
+
+        position += varLongSize(record.size()) + record.size();
+        SnapshotFormat.writeVarLong(out, record.size());
+        record.writeTo(out);
+        albumCount++;
+    }
+
+    // Writes the dictionary and footer and moves the file into place; returns the number of albums written
+    public int finish() throws IOException {
+        long dictionaryOffset = position;
+        SnapshotFormat.writeVarLong(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            SnapshotFormat.writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+        out.flush();
+        long checksum = crc.getValue();
+
+        out.writeLong(dictionaryOffset);
+        out.writeInt(albumCount);
+        out.writeInt(dictionary.size());
+        out.writeLong(checksum);
+        out.writeInt(SnapshotFormat.MAGIC);
+        out.close();
+
+        Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        finished = true;
+        return albumCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            out.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private long dictionaryRef(String value) {
+        if (value == null) {
+            return 0;
+        }
+        return dictionary.computeIfAbsent(value, v -> dictionary.size()) + 1;
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            SnapshotFormat.writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        SnapshotFormat.writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    static long toEpochMicros(LocalDateTime time) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, time.toInstant(ZoneOffset.UTC));
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
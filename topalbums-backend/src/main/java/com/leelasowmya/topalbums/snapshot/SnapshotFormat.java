@@ -0,0 +1,62 @@
+package com.leelasowmya.topalbums.snapshot;
+
+import com.leelasowmya.topalbums.exception.SnapshotFormatException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// Layout of a catalog snapshot file (all fixed-width numbers big-endian):
+//
+//   header     magic "TACS" (4) | format version (4) | created at, epoch millis (8)
+//   records    per album: varint payload length | payload
+//   dictionary varint entry count | per entry: varint byte length | UTF-8 bytes
+//   footer     dictionary offset (8) | album count (4) | dictionary entry count (4) | CRC32 of everything
+//              before the footer (8) | magic "TACS" (4)
+//
+// Record payload, in order: id, name, artist*, genre*, releaseYear, albumUrl, photoUrl, createdTime, version,
+// photoMissing, changeSeq
+// - strings are a varint (byte length + 1, 0 = null) followed by UTF-8 bytes
+// - * artist and genre repeat a lot, so they're a varint (dictionary index + 1, 0 = null) instead
+// - createdTime is a varlong (epoch micros UTC + 1, 0 = null), version a varlong (version + 1, 0 = null)
+// - photoMissing is one byte (0/1), changeSeq a varlong (changeSeq + 1, 0 = null); records written before
+//   these existed end early and read as false / null
+// Records are length-prefixed so a newer format version can append fields that older readers skip
+final class SnapshotFormat {
+    static final int MAGIC = 0x54414353; // "TACS" - Top Albums Catalog Snapshot
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int FOOTER_BYTES = 28;
+
+    private SnapshotFormat() {
+    }
+
+    // Unsigned LEB128: 7 bits per byte, high bit set on all but the last byte
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new SnapshotFormatException("Malformed varint");
+    }
+
+    static int readVarInt(ByteBuffer in) {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new SnapshotFormatException("Varint out of range: " + value);
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,339 @@
+package com.leelasowmya.topalbums.storage;
+
+import com.leelasowmya.topalbums.cache.CacheInvalidationBus;
+import com.leelasowmya.topalbums.changes.ChangeFeedService;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import com.leelasowmya.topalbums.repository.AlbumRepository.AlbumPhoto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+// Keeps the photo directory (app.photo-directory) and Album.photoUrl in agreement, a little at a time:
+// - orphan pass: walks the directory (one DirectoryStream kept open across ticks, batchSize entries per tick)
+//   and moves files no album points at any more - left behind by deleteAlbum, or by a re-upload with a
+//   different extension - into a .quarantine subdirectory. A file must be older than the grace period, and
+//   is re-checked right before the move: if it was replaced since it was listed (same name, new upload) it
+//   stays. Quarantined files are deleted for good once they've sat there for another grace period; until
+//   then the missing pass puts a file back if an album turns out to still reference it
+// - missing pass: pages through albums that reference a photo (keyset paging, batchSize per tick) and sets or
+//   clears photoMissing depending on whether the file is really there
+// Nothing runs until the application is ready (after startup runners such as a snapshot restore have
+// committed), and an orphan pass never starts while the albums table is empty - to an empty catalog every
+// file looks like an orphan.
+// The two passes alternate. Each tick costs at most batchSize file checks and one or two queries, so the
+// I/O rate is bounded by batch-size / interval no matter how big the directory gets
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.photo-reconciler", name = "enabled", havingValue = "true")
+public class PhotoStorageReconciler {
+    static final String QUARANTINE_DIRECTORY = ".quarantine";
+
+    private final AlbumRepository albumRepository;
+    private final CacheInvalidationBus invalidationBus;
+    private final ChangeFeedService changeFeed;
+    private final TransactionTemplate transaction;
+    private final Path directory;
+    private final Path quarantine;
+    private final int batchSize;
+    private final Duration gracePeriod;
+    private final Clock clock;
+
+    // Orphan pass state - null when the missing pass is running
+    private DirectoryStream<Path> listing;
+    private Iterator<Path> files;
+    // Missing pass state - null when the orphan pass is running
+    private String lastAlbumId;
+    // Set once the application is ready; @Scheduled tasks start earlier, at context refresh
+    private volatile boolean ready;
+
+    private final Counter filesScanned;
+    private final Counter orphansQuarantined;
+    private final Counter orphansRestored;
+    private final Counter orphansDeleted;
+    private final Counter bytesReclaimed;
+    private final Counter missingFlagged;
+
+    @Autowired
+    public PhotoStorageReconciler(AlbumRepository albumRepository, CacheInvalidationBus invalidationBus,
+                                  ChangeFeedService changeFeed, PlatformTransactionManager transactionManager,
+                                  @Value("${app.photo-directory}") String photoDirectory,
+                                  @Value("${app.photo-reconciler.batch-size:200}") int batchSize,
+                                  @Value("${app.photo-reconciler.orphan-grace-period:1h}") Duration gracePeriod,
+                                  MeterRegistry meterRegistry) {
+        this(albumRepository, invalidationBus, changeFeed, transactionManager, Paths.get(photoDirectory), batchSize,
+                gracePeriod, Clock.systemUTC(), meterRegistry);
+    }
+
+    PhotoStorageReconciler(AlbumRepository albumRepository, CacheInvalidationBus invalidationBus,
+                           ChangeFeedService changeFeed, PlatformTransactionManager transactionManager, Path directory,
+                           int batchSize, Duration gracePeriod, Clock clock, MeterRegistry meterRegistry) {
+        this.albumRepository = albumRepository;
+        this.invalidationBus = invalidationBus;
+        this.changeFeed = changeFeed;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.directory = directory.toAbsolutePath().normalize();
+        this.quarantine = this.directory.resolve(QUARANTINE_DIRECTORY);
+        this.batchSize = batchSize;
+        this.gracePeriod = gracePeriod;
+        this.clock = clock;
+        this.filesScanned = Counter.builder("albums.photos.reconciler.files.scanned").register(meterRegistry);
+        this.orphansQuarantined = Counter.builder("albums.photos.orphans.quarantined").register(meterRegistry);
+        this.orphansRestored = Counter.builder("albums.photos.orphans.restored")
+                .description("Quarantined files moved back because an album still referenced them").register(meterRegistry);
+        this.orphansDeleted = Counter.builder("albums.photos.orphans.deleted").register(meterRegistry);
+        this.bytesReclaimed = Counter.builder("albums.photos.reclaimed")
+                .baseUnit("bytes").description("Disk space freed by deleting orphaned cover images").register(meterRegistry);
+        this.missingFlagged = Counter.builder("albums.photos.missing.flagged")
+                .description("Albums found pointing at a cover file that doesn't exist").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void onApplicationReady() {
+        ready = true;
+    }
+
+    // Runs on Spring's single scheduler thread; synchronized keeps the pass state safe if that ever changes
+    @Scheduled(fixedDelayString = "${app.photo-reconciler.interval:10s}",
+            initialDelayString = "${app.photo-reconciler.interval:10s}")
+    public synchronized void tick() {
+        if (!ready) {
+            return;
+        }
+        try {
+            if (lastAlbumId != null) {
+                missingPassStep();
+            } else {
+                orphanPassStep();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Photo storage reconciliation step failed, restarting the pass", e);
+            closeListing();
+            lastAlbumId = null;
+        }
+    }
+
+    private void orphanPassStep() throws IOException {
+        if (files == null) {
+            if (!Files.isDirectory(directory)) {
+                return;
+            }
+            if (albumRepository.count() == 0) {
+                log.warn("Albums table is empty - skipping the orphan pass rather than quarantining every image");
+                return;
+            }
+            purgeQuarantine();
+            listing = Files.newDirectoryStream(directory);
+            files = listing.iterator();
+        }
+
+        // filename -> what it looked like when listed, for files old enough to go if nothing references them
+        Map<String, Listed> candidates = new HashMap<>();
+        Instant cutoff = clock.instant().minus(gracePeriod);
+        for (int i = 0; i < batchSize && files.hasNext(); i++) {
+            Path file = files.next();
+            filesScanned.increment();
+            String filename = file.getFileName().toString();
+            if (filename.startsWith(".")) {
+                continue; // hidden files aren't ours
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attributes.isRegularFile() && attributes.lastModifiedTime().toInstant().isBefore(cutoff)) {
+                    candidates.put(filename, Listed.of(attributes));
+                }
+            } catch (NoSuchFileException e) {
+                // deleted since it was listed
+            }
+        }
+        quarantineOrphans(candidates);
+
+        if (!files.hasNext()) {
+            closeListing();
+            lastAlbumId = ""; // switch to the missing pass, starting before the first id
+        }
+    }
+
+    // Stored files are named <album id><extension>, so the candidates' albums can be fetched by id in one query
+    private void quarantineOrphans(Map<String, Listed> candidates) throws IOException {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Map<String, String> photoUrlByAlbumId = new HashMap<>();
+        List<String> albumIds = candidates.keySet().stream().map(PhotoStorageReconciler::albumIdOf).toList();
+        for (AlbumPhoto album : albumRepository.findPhotosByIdIn(albumIds)) {
+            if (album.getPhotoUrl() != null) {
+                photoUrlByAlbumId.put(album.getId(), album.getPhotoUrl());
+            }
+        }
+
+        Instant cutoff = clock.instant().minus(gracePeriod);
+        for (Map.Entry<String, Listed> candidate : candidates.entrySet()) {
+            String filename = candidate.getKey();
+            String photoUrl = photoUrlByAlbumId.get(albumIdOf(filename));
+            if (photoUrl != null && filenameOf(photoUrl).equals(filename)) {
+                continue; // still in use
+            }
+            // The query above is older than the listing: a re-upload may have replaced the file since (ImageIngest
+            // moves a new file over the same name), and its album may already point at it. Only a file that is
+            // exactly the one listed, and still old, is moved
+            Path file = directory.resolve(filename);
+            if (!candidate.getValue().isUnchanged(file, cutoff)) {
+                continue;
+            }
+            Path target = quarantine.resolve(filename);
+            Files.createDirectories(quarantine);
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            // The mtime now records when it was quarantined, which is what purgeQuarantine() goes by
+            Files.setLastModifiedTime(target, FileTime.from(clock.instant()));
+            orphansQuarantined.increment();
+            log.info("Quarantined orphaned image {} ({} bytes)", filename, candidate.getValue().size());
+        }
+    }
+
+    // Deletes quarantined files that nothing has asked for during a whole grace period
+    private void purgeQuarantine() throws IOException {
+        if (!Files.isDirectory(quarantine)) {
+            return;
+        }
+        Instant cutoff = clock.instant().minus(gracePeriod);
+        try (DirectoryStream<Path> quarantined = Files.newDirectoryStream(quarantine)) {
+            for (Path file : quarantined) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attributes.isRegularFile() && attributes.lastModifiedTime().toInstant().isBefore(cutoff)
+                        && Files.deleteIfExists(file)) {
+                    orphansDeleted.increment();
+                    bytesReclaimed.increment(attributes.size());
+                    log.info("Deleted orphaned image {} ({} bytes)", file.getFileName(), attributes.size());
+                }
+            }
+        }
+    }
+
+    private void missingPassStep() {
+        List<AlbumPhoto> page = albumRepository.findPhotosAfter(lastAlbumId, PageRequest.of(0, batchSize));
+        List<String> nowMissing = new ArrayList<>();
+        List<String> nowPresent = new ArrayList<>();
+        for (AlbumPhoto album : page) {
+            filesScanned.increment();
+            boolean exists = Files.isRegularFile(directory.resolve(filenameOf(album.getPhotoUrl())))
+                    || restoreFromQuarantine(filenameOf(album.getPhotoUrl()));
+            if (!exists && !album.isPhotoMissing()) {
+                nowMissing.add(album.getId());
+            } else if (exists && album.isPhotoMissing()) {
+                nowPresent.add(album.getId());
+            }
+        }
+        updateMissing(nowMissing, true);
+        updateMissing(nowPresent, false);
+
+        // A short page means the end of the table: next tick starts a new orphan pass
+        lastAlbumId = page.size() < batchSize ? null : page.get(page.size() - 1).getId();
+    }
+
+    // Puts a quarantined file back if an album references it after all; true if it was there
+    private boolean restoreFromQuarantine(String filename) {
+        Path quarantined = quarantine.resolve(filename);
+        if (!Files.isRegularFile(quarantined)) {
+            return false;
+        }
+        try {
+            Files.move(quarantined, directory.resolve(filename), StandardCopyOption.ATOMIC_MOVE);
+            orphansRestored.increment();
+            log.warn("Restored quarantined image {} - an album still references it", filename);
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not restore quarantined image {}", filename, e);
+            return false;
+        }
+    }
+
+    private void updateMissing(List<String> albumIds, boolean missing) {
+        if (albumIds.isEmpty()) {
+            return;
+        }
+        // Each flag change is an album change, so it gets its own sequence number for GET /albums/changes
+        transaction.executeWithoutResult(status -> albumIds.forEach(id ->
+                albumRepository.updatePhotoMissing(id, missing, changeFeed.nextChangeSeq())));
+        albumIds.forEach(invalidationBus::albumChanged);
+        if (missing) {
+            missingFlagged.increment(albumIds.size());
+            log.warn("Flagged {} albums whose cover image is missing: {}", albumIds.size(), albumIds);
+        }
+    }
+
+    @PreDestroy
+    synchronized void closeListing() {
+        if (listing != null) {
+            try {
+                listing.close();
+            } catch (IOException e) {
+                log.warn("Could not close photo directory listing", e);
+            }
+        }
+        listing = null;
+        files = null;
+    }
+
+    // A file as it was when the directory was listed
+    private record Listed(long size, FileTime lastModified, Object fileKey) {
+        static Listed of(BasicFileAttributes attributes) {
+            return new Listed(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey());
+        }
+
+        // Still the same file (mtime and file key - the inode on Unix) and still older than the cutoff
+        boolean isUnchanged(Path file, Instant cutoff) throws IOException {
+            BasicFileAttributes now;
+            try {
+                now = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+            return now.isRegularFile()
+                    && now.lastModifiedTime().equals(lastModified)
+                    && Objects.equals(now.fileKey(), fileKey)
+                    && now.lastModifiedTime().toInstant().isBefore(cutoff);
+        }
+    }
+
+    // "abc.png" -> "abc"
+    private static String albumIdOf(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot > 0 ? filename.substring(0, dot) : filename;
+    }
+
+    // "http://host/albums/image/abc.png" -> "abc.png"
+    private static String filenameOf(String photoUrl) {
+        return photoUrl.substring(photoUrl.lastIndexOf('/') + 1);
+    }
+}
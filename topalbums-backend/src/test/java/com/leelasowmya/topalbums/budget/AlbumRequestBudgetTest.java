@@ -0,0 +1,317 @@
+package com.leelasowmya.topalbums.budget;
+
+import com.leelasowmya.topalbums.changes.ChangeFeedService;
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumPlayCount;
+import com.leelasowmya.topalbums.ingest.TestImages;
+import com.leelasowmya.topalbums.ranking.PlayCounterService;
+import com.leelasowmya.topalbums.ranking.TopAlbumsTracker;
+import com.leelasowmya.topalbums.repository.AlbumPlayCountRepository;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpMethod;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Cost regression guards for the album endpoints: the whole app runs against in-memory H2 and each request's
+// SQL statements and allocated bytes are checked against a budget (see RequestBudget)
+// If one of these fails after a change, either the change added real cost (fix it) or the budget is
+// knowingly being raised (update it here, with the reason in the commit)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:budget;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "app.photo-reconciler.enabled=false" // background cleanup would race the upload budgets
+})
+@AutoConfigureMockMvc
+@Import(SqlRecorder.class)
+class AlbumRequestBudgetTest {
+    private static final int ALBUM_COUNT = 30;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private PlayCounterService playCounterService;
+
+    @Autowired
+    private AlbumPlayCountRepository playCountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Upload budgets store real covers - in a directory of their own, never the developer's photo directory
+    @TempDir
+    static Path photoDirectory;
+
+    @DynamicPropertySource
+    static void photoStorage(DynamicPropertyRegistry registry) {
+        registry.add("app.photo-directory", () -> photoDirectory.toString());
+    }
+
+    private List<Album> albums;
+
+    @BeforeEach
+    void setUp() {
+        // Arrange: A catalog bigger than a default page, so a hidden per-row query would show up as extra statements
+        albumRepository.deleteAll();
+        albums = new ArrayList<>();
+        for (int i = 0; i < ALBUM_COUNT; i++) {
+            Album album = new Album();
+            album.setName("Album " + i);
+            album.setArtist("Artist " + (i % 3));
+            album.setGenre("Rock");
+            album.setReleaseYear(String.valueOf(1970 + i));
+            albums.add(albumRepository.save(album));
+        }
+    }
+
+    @Test
+    void testSqlRecorder_countsJdbcTemplateStatementsToo() {
+        // Play flushes, top album reads and snapshot export use JdbcTemplate, not Hibernate - a budget of
+        // 0 statements for them only means something if those statements are recorded as well
+        RequestBudget.Measurement cost = RequestBudget.measureOnce(() -> {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM albums", Long.class);
+            jdbcTemplate.update("UPDATE albums SET genre = ? WHERE id = ?", "Jazz", albums.get(0).getId());
+        });
+
+        assertEquals(2, cost.statements().size(), "Recorded: " + cost.statements());
+    }
+
+    @Test
+    void testListPage_lastPageIsOneQueryWithoutCount() {
+        // A page that isn't full already tells Spring Data the total, so no count query should be sent
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(get("/albums").param("page", "0").param("size", "50")).andExpect(status().isOk()));
+        System.out.println("List page (partial): " + cost);
+
+        RequestBudget.of("GET /albums (partial page)")
+                .maxStatements(1)
+                .forbid("count(")
+                .maxAllocated(DataSize.ofKilobytes(384))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testListPage_fullPageIsOneSelectPlusOneCount() {
+        // A full page needs the total for totalElements/totalPages - exactly one extra count query, never one per row
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(get("/albums").param("page", "0").param("size", "10")).andExpect(status().isOk()));
+        System.out.println("List page (full): " + cost);
+
+        RequestBudget.of("GET /albums (full page)")
+                .maxStatements(2)
+                .maxAllocated(DataSize.ofKilobytes(384))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testFilteredSortedListPage_isOneQueryWithoutCount() {
+        // 10 albums by "Artist 1", fetched as one partial page
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(get("/albums").param("artist", "Artist 1").param("sort", "-releaseYear")
+                        .param("size", "20")).andExpect(status().isOk()));
+        System.out.println("List page (filtered + sorted): " + cost);
+
+        RequestBudget.of("GET /albums?artist=...&sort=-releaseYear")
+                .maxStatements(1)
+                .forbid("count(")
+                .maxAllocated(DataSize.ofKilobytes(384))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testDetailRead_isOneQueryThenServedFromCache() {
+        String id = albums.get(0).getId();
+
+        // First read misses the album cache: exactly one select by primary key
+        RequestBudget.Measurement firstRead = RequestBudget.measureOnce(() ->
+                mockMvc.perform(get("/albums/{id}", id)).andExpect(status().isOk()));
+        RequestBudget.of("GET /albums/{id} (cache miss)").maxStatements(1).assertMet(firstRead);
+
+        // Every read after that comes from AlbumCache - no SQL at all
+        RequestBudget.Measurement cachedRead = RequestBudget.measure(() ->
+                mockMvc.perform(get("/albums/{id}", id)).andExpect(status().isOk()));
+        System.out.println("Detail read (cached): " + cachedRead);
+
+        RequestBudget.of("GET /albums/{id} (cached)")
+                .maxStatements(0)
+                .maxAllocated(DataSize.ofKilobytes(160))
+                .assertMet(cachedRead);
+    }
+
+    @Test
+    void testChangeFeed_isTwoRangeQueriesWhateverTheCatalogSize() {
+        // Number the albums the way startup does, then ask for the last 5 changes only
+        changeFeedService.assignMissingChangeSeqs();
+        long since = changeFeedService.changesSince(0, ChangeFeedService.MAX_LIMIT).next() - 5;
+
+        // One read of the log position, one range read each on albums and tombstones - no count, no full scan
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(get("/albums/changes").param("since", String.valueOf(since)))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.albums.length()").value(5)));
+        System.out.println("Change feed (5 changes): " + cost);
+
+        RequestBudget.of("GET /albums/changes")
+                .maxStatements(3)
+                .forbid("count(")
+                .maxAllocated(DataSize.ofKilobytes(256))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testCreate_isTheInsertPlusOneChangeNumber() {
+        // One change number (reserve + read back), one insert - nothing per existing album
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(post("/albums").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"New album\",\"artist\":\"Artist\",\"releaseYear\":\"2001\"}"))
+                        .andExpect(status().isCreated()));
+        System.out.println("Create: " + cost);
+
+        RequestBudget.of("POST /albums")
+                .maxStatements(3)
+                .maxAllocated(DataSize.ofKilobytes(256))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testUpdate_isLoadPlusChangeNumberPlusUpdate() {
+        String id = albums.get(0).getId();
+
+        // Load by primary key, one change number, one versioned update
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(put("/albums/{id}", id).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Renamed\",\"artist\":\"Artist\",\"releaseYear\":\"2001\"}"))
+                        .andExpect(status().isOk()));
+        System.out.println("Update: " + cost);
+
+        RequestBudget.of("PUT /albums/{id}")
+                .maxStatements(4)
+                .maxAllocated(DataSize.ofKilobytes(256))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testDelete_isLoadPlusChangeNumberPlusDeleteAndTombstone() {
+        // measure() runs the request many times - each run deletes a different album
+        Deque<String> ids = new ArrayDeque<>(albums.stream().map(Album::getId).toList());
+
+        // Load, one change number, the delete and its tombstone
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(delete("/albums/{id}", ids.pop())).andExpect(status().isNoContent()));
+        System.out.println("Delete: " + cost);
+
+        RequestBudget.of("DELETE /albums/{id}")
+                .maxStatements(5)
+                .maxAllocated(DataSize.ofKilobytes(256))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testUploadPhoto_isLoadPlusChangeNumberPlusUpdate() {
+        String id = albums.get(0).getId();
+        MockMultipartFile cover = new MockMultipartFile("file", "cover.png", "image/png", TestImages.png(600, 600));
+
+        // Same SQL as an update, whatever the image size - the bytes only go to disk
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(multipart(HttpMethod.PUT, "/albums/{id}/image", id).file(cover))
+                        .andExpect(status().isOk()));
+        System.out.println("Upload: " + cost);
+
+        RequestBudget.of("PUT /albums/{id}/image")
+                .maxStatements(4)
+                .maxAllocated(DataSize.ofKilobytes(384))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testGetPhoto_isServedWithoutSql() throws Exception {
+        String id = albums.get(0).getId();
+        MockMultipartFile cover = new MockMultipartFile("file", "cover.png", "image/png", TestImages.png(600, 600));
+        mockMvc.perform(multipart(HttpMethod.PUT, "/albums/{id}/image", id).file(cover)).andExpect(status().isOk());
+
+        // Never touches the database; after warmup the cover is popular enough to come from ImageCache
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(get("/albums/image/{filename}", id + ".png")).andExpect(status().isOk()));
+        System.out.println("Image read: " + cost);
+
+        RequestBudget.of("GET /albums/image/{filename}")
+                .maxStatements(0)
+                .maxAllocated(DataSize.ofKilobytes(96))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testRecordPlay_neverTouchesTheDatabase() {
+        String id = albums.get(0).getId();
+
+        // Counted in memory; the database only sees the batched flush, never the request
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(post("/albums/{id}/plays", id)).andExpect(status().isAccepted()));
+        System.out.println("Record play: " + cost);
+
+        RequestBudget.of("POST /albums/{id}/plays")
+                .maxStatements(0)
+                .maxAllocated(DataSize.ofKilobytes(96))
+                .assertMet(cost);
+    }
+
+    @Test
+    void testTopAlbums_isOneQueryForTheWholeList() {
+        // Plays for every album in the current hour, loaded into the ranking the way a resync does
+        LocalDateTime hour = TopAlbumsTracker.hourOf(LocalDateTime.now(ZoneOffset.UTC));
+        for (int i = 0; i < albums.size(); i++) {
+            playCountRepository.save(new AlbumPlayCount(albums.get(i).getId(), hour, i + 1));
+        }
+        playCounterService.resync();
+
+        // The ranking is in memory; album details for the whole top 10 are one findAllById
+        RequestBudget.Measurement cost = RequestBudget.measure(() ->
+                mockMvc.perform(get("/albums/top").param("limit", "10"))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.length()").value(10)));
+        System.out.println("Top albums: " + cost);
+
+        RequestBudget.of("GET /albums/top")
+                .maxStatements(1)
+                .maxAllocated(DataSize.ofKilobytes(256))
+                .assertMet(cost);
+    }
+}
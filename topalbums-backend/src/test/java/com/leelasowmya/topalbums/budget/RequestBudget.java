@@ -0,0 +1,152 @@
+package com.leelasowmya.topalbums.budget;
+
+import org.junit.jupiter.api.function.Executable;
+import org.opentest4j.AssertionFailedError;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+// Cost budget for one request: how many SQL statements it may send and how much it may allocate
+// Used by tests to catch regressions like an extra query per row or a change that doubles allocations -
+// things functional assertions never notice
+//
+// Usage:
+//   RequestBudget.of("list page").maxStatements(1).forbid("count(").maxAllocated(DataSize.ofKilobytes(512))
+//           .assertMet(RequestBudget.measure(() -> mockMvc.perform(get("/albums"))));
+//
+// On failure the expected and actual costs are reported side by side (IDEs show them as a diff),
+// followed by every SQL statement the request sent
+public record RequestBudget(String name, int maxStatements, long maxAllocatedBytes, List<String> forbiddenSql) {
+    // Runs before measuring, so class loading, JIT and Hibernate's query plan cache don't count against the budget
+    private static final int WARMUP_RUNS = 20;
+    private static final int MEASURED_RUNS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static RequestBudget of(String name) {
+        return new RequestBudget(name, Integer.MAX_VALUE, Long.MAX_VALUE, List.of());
+    }
+
+    public RequestBudget maxStatements(int maxStatements) {
+        return new RequestBudget(name, maxStatements, maxAllocatedBytes, forbiddenSql);
+    }
+
+    public RequestBudget maxAllocated(DataSize maxAllocated) {
+        return new RequestBudget(name, maxStatements, maxAllocated.toBytes(), forbiddenSql);
+    }
+
+    // Fails the budget if any statement contains this fragment (case-insensitive), e.g. "count("
+    public RequestBudget forbid(String sqlFragment) {
+        List<String> forbidden = new ArrayList<>(forbiddenSql);
+        forbidden.add(sqlFragment);
+        return new RequestBudget(name, maxStatements, maxAllocatedBytes, List.copyOf(forbidden));
+    }
+
+    // What one request cost: the SQL it sent and the bytes allocated on the calling thread
+    public record Measurement(List<String> statements, long allocatedBytes) {
+    }
+
+    // Warms the request up, then runs it a few more times and keeps the worst SQL count and the lowest allocation
+    // (the minimum filters out one-off noise such as a TLAB refill or a lazily created buffer)
+    // MockMvc runs the whole request on the calling thread, so per-thread counters see all of its work
+    public static Measurement measure(Executable request) {
+        try {
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                request.execute();
+            }
+            List<String> worstStatements = List.of();
+            long minAllocated = Long.MAX_VALUE;
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                SqlRecorder.start();
+                long before = THREADS.getCurrentThreadAllocatedBytes();
+                try {
+                    request.execute();
+                } finally {
+                    long allocated = THREADS.getCurrentThreadAllocatedBytes() - before;
+                    List<String> statements = SqlRecorder.stop();
+                    minAllocated = Math.min(minAllocated, allocated);
+                    if (statements.size() >= worstStatements.size()) {
+                        worstStatements = statements;
+                    }
+                }
+            }
+            return new Measurement(worstStatements, minAllocated);
+        } catch (Throwable t) {
+            throw new AssertionError("Request failed while measuring its budget: " + t, t);
+        }
+    }
+
+    // Measures a request that only makes sense once (e.g. the first, uncached read) - SQL only, no warmup
+    public static Measurement measureOnce(Executable request) {
+        SqlRecorder.start();
+        try {
+            request.execute();
+            return new Measurement(SqlRecorder.stop(), 0);
+        } catch (Throwable t) {
+            SqlRecorder.stop();
+            throw new AssertionError("Request failed while measuring its budget: " + t, t);
+        }
+    }
+
+    public void assertMet(Measurement actual) {
+        List<String> violations = new ArrayList<>();
+        if (actual.statements().size() > maxStatements) {
+            violations.add("sent " + actual.statements().size() + " SQL statements, budget is " + maxStatements);
+        }
+        for (String fragment : forbiddenSql) {
+            if (actual.statements().stream().anyMatch(sql -> sql.toLowerCase().contains(fragment.toLowerCase()))) {
+                violations.add("sent SQL containing '" + fragment + "'");
+            }
+        }
+        if (actual.allocatedBytes() > maxAllocatedBytes) {
+            violations.add("allocated " + kilobytes(actual.allocatedBytes()) + ", budget is " + kilobytes(maxAllocatedBytes)
+                    + " (+" + kilobytes(actual.allocatedBytes() - maxAllocatedBytes) + ")");
+        }
+        if (violations.isEmpty()) {
+            return;
+        }
+
+        StringBuilder message = new StringBuilder("'" + name + "' is over budget:\n");
+        violations.forEach(violation -> message.append("  - ").append(violation).append('\n'));
+        message.append("SQL sent:\n");
+        for (int i = 0; i < actual.statements().size(); i++) {
+            message.append("  ").append(i + 1).append(". ").append(actual.statements().get(i)).append('\n');
+        }
+        throw new AssertionFailedError(message.toString(), describeBudget(), describe(actual));
+    }
+
+    private String describeBudget() {
+        StringBuilder text = new StringBuilder();
+        if (maxStatements != Integer.MAX_VALUE) {
+            text.append("statements <= ").append(maxStatements).append('\n');
+        }
+        forbiddenSql.forEach(fragment -> text.append("no SQL containing '").append(fragment).append("'\n"));
+        if (maxAllocatedBytes != Long.MAX_VALUE) {
+            text.append("allocated <= ").append(kilobytes(maxAllocatedBytes)).append('\n');
+        }
+        return text.toString();
+    }
+
+    private String describe(Measurement actual) {
+        StringBuilder text = new StringBuilder();
+        if (maxStatements != Integer.MAX_VALUE) {
+            text.append("statements = ").append(actual.statements().size()).append('\n');
+        }
+        for (String fragment : forbiddenSql) {
+            actual.statements().stream()
+                    .filter(sql -> sql.toLowerCase().contains(fragment.toLowerCase()))
+                    .forEach(sql -> text.append("SQL containing '").append(fragment).append("': ").append(sql).append('\n'));
+        }
+        if (maxAllocatedBytes != Long.MAX_VALUE) {
+            text.append("allocated = ").append(kilobytes(actual.allocatedBytes())).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String kilobytes(long bytes) {
+        return String.format("%.1f KB", bytes / 1024.0);
+    }
+}
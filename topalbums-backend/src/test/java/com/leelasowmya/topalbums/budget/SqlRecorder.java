@@ -0,0 +1,98 @@
+package com.leelasowmya.topalbums.budget;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.lang.NonNull;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Records every SQL statement sent while a recording is active, whoever sends it: Hibernate, JdbcTemplate or
+// plain JDBC. It wraps the DataSource bean, so statements are seen where they're handed to the driver
+// - each prepareStatement / prepareCall counts once, however many times (or batch rows) it is then executed
+// - plain Statements count once per SQL string passed to execute* / addBatch
+// Recording is per thread, so statements from background work (play flushes, version checks...) running on
+// other threads never leak into a test's count. Register it with @Import(SqlRecorder.class)
+public class SqlRecorder implements BeanPostProcessor {
+    private static final ThreadLocal<List<String>> RECORDING = new ThreadLocal<>();
+
+    private static final Set<String> PREPARE_METHODS = Set.of("prepareStatement", "prepareCall");
+    private static final Set<String> EXECUTE_METHODS =
+            Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "addBatch");
+
+    public static void start() {
+        RECORDING.set(new ArrayList<>());
+    }
+
+    // Returns the statements recorded since start(), in the order they were sent
+    public static List<String> stop() {
+        List<String> statements = RECORDING.get();
+        RECORDING.remove();
+        return statements == null ? List.of() : statements;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+        return bean instanceof DataSource dataSource ? recording(dataSource) : bean;
+    }
+
+    // unwrap() and everything else go straight to the real DataSource, so pool metrics and the like still work
+    static DataSource recording(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, args) -> {
+            Object result = invoke(dataSource, method, args);
+            return result instanceof Connection connection ? recording(connection) : result;
+        });
+    }
+
+    private static Connection recording(Connection connection) {
+        return proxy(Connection.class, connection, (method, args) -> {
+            if (PREPARE_METHODS.contains(method.getName())) {
+                record((String) args[0]);
+            }
+            Object result = invoke(connection, method, args);
+            // Prepared statements were recorded above; only plain ones carry their SQL into execute*
+            return result instanceof Statement statement && !(result instanceof PreparedStatement)
+                    ? recording(statement) : result;
+        });
+    }
+
+    private static Statement recording(Statement statement) {
+        return proxy(Statement.class, statement, (method, args) -> {
+            if (EXECUTE_METHODS.contains(method.getName()) && args != null && args[0] instanceof String sql) {
+                record(sql);
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static void record(String sql) {
+        List<String> statements = RECORDING.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, T target, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(SqlRecorder.class.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> handler.handle(method, args)));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
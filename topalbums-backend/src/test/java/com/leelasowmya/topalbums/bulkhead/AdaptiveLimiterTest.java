@@ -0,0 +1,128 @@
+package com.leelasowmya.topalbums.bulkhead;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimiterTest {
+
+    @Test
+    void testAcquire_shouldRejectWhenLimitReachedAndNoQueue() throws InterruptedException {
+        // Arrange: A fixed limit of 2 with no waiting queue
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 2, 2, 0, 0, TimeUnit.MILLISECONDS);
+
+        // Act: Take both slots, then ask for a third
+        assertEquals(AdaptiveLimiter.Acquired.IMMEDIATE, limiter.acquire());
+        assertEquals(AdaptiveLimiter.Acquired.IMMEDIATE, limiter.acquire());
+        AdaptiveLimiter.Acquired third = limiter.acquire();
+
+        // Assert: The third request is shed immediately instead of waiting
+        assertEquals(AdaptiveLimiter.Acquired.REJECTED, third);
+        assertEquals(2, limiter.getInFlight());
+
+        // Releasing a slot makes room again
+        limiter.release(1_000_000, true);
+        assertEquals(AdaptiveLimiter.Acquired.IMMEDIATE, limiter.acquire());
+    }
+
+    @Test
+    void testAcquire_shouldQueueUntilSlotIsReleased() throws Exception {
+        // Arrange: One slot, one queue place, generous wait
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 1, 2, TimeUnit.SECONDS);
+        limiter.acquire();
+
+        // Act: Release the slot from another thread while this one waits in the queue
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            limiter.release(1_000_000, true);
+        });
+        releaser.start();
+        AdaptiveLimiter.Acquired result = limiter.acquire();
+        releaser.join();
+
+        // Assert: The waiting request got the slot and is reported as queued
+        assertEquals(AdaptiveLimiter.Acquired.AFTER_QUEUEING, result);
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    void testRelease_whenLimitGrowsBySeveralSlots_shouldWakeAsManyWaiters() throws Exception {
+        // Arrange: All 100 slots busy with a 1ms baseline learned, and three requests queued behind them
+        AdaptiveLimiter limiter = new AdaptiveLimiter(100, 1, 200, 3, 5, TimeUnit.SECONDS);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+        }
+        limiter.release(1_000_000, true);
+        limiter.acquire();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<AdaptiveLimiter.Acquired>> waiters = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                waiters.add(executor.submit(limiter::acquire));
+            }
+            while (limiter.getWaiting() < 3) {
+                Thread.sleep(5);
+            }
+
+            // Act: One healthy sample raises the limit from 100 to 102 as its slot is given back
+            limiter.release(1_000_000, true);
+
+            // Assert: Three slots are free, so all three waiters get in now rather than after maxWait
+            assertEquals(102, limiter.getLimit());
+            for (Future<AdaptiveLimiter.Acquired> waiter : waiters) {
+                assertEquals(AdaptiveLimiter.Acquired.AFTER_QUEUEING, waiter.get(1, TimeUnit.SECONDS));
+            }
+            assertEquals(102, limiter.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRelease_shouldShrinkLimitWhenLatencyRises() throws InterruptedException {
+        // Arrange: Limiter that starts at 50 and has learned a 1ms baseline under full load
+        AdaptiveLimiter limiter = new AdaptiveLimiter(50, 5, 100, 0, 0, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < 200; i++) {
+            limiter.release(1_000_000, true);
+            limiter.acquire();
+        }
+        int healthyLimit = limiter.getLimit();
+
+        // Act: Requests suddenly take 20x longer (e.g. disk or DB saturated)
+        for (int i = 0; i < 50; i++) {
+            limiter.release(20_000_000, true);
+            limiter.acquire();
+        }
+
+        // Assert: The limit backs off towards the minimum
+        assertTrue(limiter.getLimit() < healthyLimit / 2,
+                "Limit should shrink from " + healthyLimit + " but was " + limiter.getLimit());
+        assertTrue(limiter.getLimit() >= 5, "Limit must not go below minLimit");
+    }
+
+    @Test
+    void testClassify_shouldSeparateUploadsFromReads() {
+        // Assert: Each endpoint lands in its own bulkhead; non-album paths aren't limited at all
+        assertEquals(EndpointClass.UPLOAD, EndpointClass.classify(new MockHttpServletRequest("PUT", "/albums/123/image")));
+        assertEquals(EndpointClass.IMAGE_READ, EndpointClass.classify(new MockHttpServletRequest("GET", "/albums/image/123.png")));
+        assertEquals(EndpointClass.METADATA_READ, EndpointClass.classify(new MockHttpServletRequest("GET", "/albums/123")));
+        assertEquals(EndpointClass.METADATA_READ, EndpointClass.classify(new MockHttpServletRequest("GET", "/albums")));
+        assertEquals(EndpointClass.WRITE, EndpointClass.classify(new MockHttpServletRequest("POST", "/albums")));
+        assertEquals(EndpointClass.WRITE, EndpointClass.classify(new MockHttpServletRequest("DELETE", "/albums/123")));
+        assertNull(EndpointClass.classify(new MockHttpServletRequest("GET", "/actuator/health")));
+    }
+}
@@ -0,0 +1,85 @@
+package com.leelasowmya.topalbums.cache;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+class AlbumCacheVersionCheckTest {
+
+    @Mock
+    private AlbumRepository albumRepository;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AlbumCache albumCache;
+    private AlbumCacheVersionCheck versionCheck;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        albumCache = new AlbumCache(100, meterRegistry);
+        versionCheck = new AlbumCacheVersionCheck(albumCache, albumRepository, meterRegistry);
+    }
+
+    @Test
+    void testVerifyCachedVersions_shouldEvictChangedAndDeletedAlbums() {
+        // Arrange: Three cached albums; in the database one is unchanged, one was updated, one is gone
+        cache("kept", 1L);
+        cache("changed", 1L);
+        cache("deleted", 1L);
+        when(albumRepository.findVersionsByIdIn(anyCollection()))
+                .thenReturn(List.of(version("kept", 1L), version("changed", 2L)));
+
+        // Act
+        versionCheck.verifyCachedVersions();
+
+        // Assert: Only the up-to-date album stays, and the missed invalidations are counted
+        assertNotNull(albumCache.get("kept"));
+        assertNull(albumCache.get("changed"));
+        assertNull(albumCache.get("deleted"));
+        assertEquals(2, meterRegistry.counter("albums.album.cache.stale.evictions").count());
+    }
+
+    @Test
+    void testVerifyCachedVersions_allCurrent_shouldEvictNothing() {
+        // Arrange
+        cache("a1", 3L);
+        when(albumRepository.findVersionsByIdIn(anyCollection())).thenReturn(List.of(version("a1", 3L)));
+
+        // Act
+        versionCheck.verifyCachedVersions();
+
+        // Assert
+        assertEquals(1, albumCache.size());
+        assertEquals(0, meterRegistry.counter("albums.album.cache.stale.evictions").count());
+    }
+
+    private void cache(String id, Long version) {
+        albumCache.put(Album.builder().id(id).name(id).artist("Artist").version(version).build(),
+                albumCache.currentGeneration());
+    }
+
+    private static AlbumRepository.AlbumVersion version(String id, Long version) {
+        return new AlbumRepository.AlbumVersion() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+}
@@ -0,0 +1,216 @@
+package com.leelasowmya.topalbums.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.leelasowmya.topalbums.domain.Album;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlbumJsonConverterTest {
+
+    // Configured the way Spring Boot configures its own ObjectMapper (java.time support, ISO dates)
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final AlbumJsonConverter converter = new AlbumJsonConverter(objectMapper, 100);
+    private final MappingJackson2HttpMessageConverter jackson = new MappingJackson2HttpMessageConverter(objectMapper);
+
+    // What the controller declares for GET /albums
+    private static final Type ALBUM_PAGE = ResolvableType.forClassWithGenerics(Page.class, Album.class).getType();
+
+    @Test
+    void testWrite_albumShouldMatchJacksonOutput() throws IOException {
+        // Arrange
+        Album album = album("a1", "Abbey Road", 3L);
+
+        // Act
+        String json = write(album);
+
+        // Assert: Byte for byte what Jackson writes for the same album
+        assertEquals(objectMapper.writeValueAsString(album), json);
+    }
+
+    @Test
+    void testWrite_pageShouldMatchJacksonOutput() throws IOException {
+        // Arrange: Page 2 (size 2, sorted) of 5 albums
+        List<Album> albums = List.of(album("a1", "Abbey Road", 0L), album("a2", "Revolver", 1L));
+        Page<Album> page = new PageImpl<>(albums, PageRequest.of(1, 2, Sort.by("name")), 5);
+
+        // Act
+        String json = write(converter, page, ALBUM_PAGE);
+
+        // Assert: The envelope Jackson writes, pageable and sort included (compared as trees: Jackson orders
+        // PageImpl's getters by reflection, which isn't stable between runs)
+        JsonNode tree = objectMapper.readTree(json);
+        assertEquals(objectMapper.readTree(write(jackson, page, ALBUM_PAGE)), tree);
+        assertEquals(5, tree.get("totalElements").asLong());
+        assertEquals(3, tree.get("totalPages").asInt());
+    }
+
+    @Test
+    void testCanWrite_shouldOnlyTakeAlbumsAndPagesOfAlbums() {
+        // Arrange: Other pages, as a handler would declare them
+        Type stringPage = ResolvableType.forClassWithGenerics(Page.class, String.class).getType();
+        Type wildcardPage = ResolvableType.forClassWithGenerics(Page.class, Object.class).getType();
+
+        // Act + Assert: Only Album / Page<Album>; everything else is left to Jackson
+        assertTrue(converter.canWrite(Album.class, Album.class, MediaType.APPLICATION_JSON));
+        assertTrue(converter.canWrite(ALBUM_PAGE, PageImpl.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(stringPage, PageImpl.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(wildcardPage, PageImpl.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(Page.class, PageImpl.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(PageImpl.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void testWrite_shouldReuseBytesUntilVersionChanges() throws IOException {
+        // Arrange: Cache the album's JSON
+        Album album = album("a1", "Abbey Road", 0L);
+        byte[] first = converter.toJson(album);
+
+        // Act: Same version again, then an update (which bumps the version)
+        byte[] again = converter.toJson(album);
+        album.setName("Let It Be");
+        album.setVersion(1L);
+        byte[] updated = converter.toJson(album);
+
+        // Assert: The cached array is handed back until the version moves, then re-encoded
+        assertSame(first, again);
+        assertNotSame(first, updated);
+        assertTrue(new String(updated).contains("Let It Be"));
+        assertEquals(1, converter.size());
+    }
+
+    @Test
+    void testToJson_overCapacity_shouldEvictLeastRecentlyUsed() throws IOException {
+        // Arrange: Fill the cache (capacity 100), then use the oldest entry again
+        for (int i = 0; i < 100; i++) {
+            converter.toJson(album("album-" + i, "Album " + i, 0L));
+        }
+        Album recentlyUsed = album("album-0", "Album 0", 0L);
+        byte[] cached = converter.toJson(recentlyUsed);
+
+        // Act: One more album goes over capacity
+        converter.toJson(album("album-100", "Album 100", 0L));
+
+        // Assert: A tenth of the cache is dropped in one go, least recently used first
+        assertEquals(91, converter.size());
+        assertSame(cached, converter.toJson(recentlyUsed));
+    }
+
+    @Test
+    void testWrite_unsavedAlbumShouldNotBeCached() throws IOException {
+        // Arrange: No id or version yet
+        Album album = Album.builder().name("Draft").artist("Nobody").build();
+
+        // Act
+        String json = write(album);
+
+        // Assert
+        assertEquals(objectMapper.writeValueAsString(album), json);
+        assertEquals(0, converter.size());
+    }
+
+    // Per-request Jackson vs spliced cached bytes for a full list page; run with -Dbenchmarks=true
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkPageSerialization() throws IOException {
+        List<Album> albums = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            albums.add(album("album-" + i, "Album number " + i, (long) i));
+        }
+        Page<Album> page = new PageImpl<>(albums, PageRequest.of(0, 10), 1000);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int warmup = 20_000;
+        int iterations = 50_000;
+        for (int i = 0; i < warmup; i++) {
+            discard(jackson, page);
+            discard(converter, page);
+        }
+
+        long cpu = threads.getCurrentThreadCpuTime();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            discard(jackson, page);
+        }
+        long jacksonCpu = (threads.getCurrentThreadCpuTime() - cpu) / iterations;
+        long jacksonAllocated = (threads.getCurrentThreadAllocatedBytes() - allocated) / iterations;
+
+        cpu = threads.getCurrentThreadCpuTime();
+        allocated = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            discard(converter, page);
+        }
+        long splicedCpu = (threads.getCurrentThreadCpuTime() - cpu) / iterations;
+        long splicedAllocated = (threads.getCurrentThreadAllocatedBytes() - allocated) / iterations;
+
+        // Both write to a discarding response, so the numbers are the serialization work alone
+        System.out.printf("Page of 10 albums - Jackson: %d ns, %d bytes/op | cached: %d ns, %d bytes/op%n",
+                jacksonCpu, jacksonAllocated, splicedCpu, splicedAllocated);
+        assertTrue(splicedCpu < jacksonCpu, "Splicing cached JSON should cost less CPU than serializing");
+    }
+
+    private String write(Album album) throws IOException {
+        return write(converter, album, Album.class);
+    }
+
+    private static String write(GenericHttpMessageConverter<Object> messageConverter, Object value, Type type)
+            throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        messageConverter.write(value, type, MediaType.APPLICATION_JSON, output);
+        return output.getBodyAsString();
+    }
+
+    private static void discard(GenericHttpMessageConverter<Object> messageConverter, Page<Album> page)
+            throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        messageConverter.write(page, ALBUM_PAGE, MediaType.APPLICATION_JSON, new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return OutputStream.nullOutputStream();
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        });
+    }
+
+    private static Album album(String id, String name, Long version) {
+        return Album.builder()
+                .id(id)
+                .name(name)
+                .artist("The Beatles")
+                .genre("Rock")
+                .releaseYear("1969")
+                .albumUrl("https://example.com/" + id)
+                .photoUrl("http://localhost:8080/albums/image/" + id + ".png")
+                .createdTime(LocalDateTime.of(2025, 1, 2, 3, 4, 5))
+                .version(version)
+                .build();
+    }
+}
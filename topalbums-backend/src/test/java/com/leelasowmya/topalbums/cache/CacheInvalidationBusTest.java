@@ -0,0 +1,114 @@
+package com.leelasowmya.topalbums.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CacheInvalidationBusTest {
+
+    @Mock
+    private AlbumCache albumCache;
+
+    @Mock
+    private ImageCache imageCache;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private CacheInvalidationBus invalidationBus;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        invalidationBus = new CacheInvalidationBus(albumCache, imageCache, jdbcTemplate, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testAlbumChanged_inTransaction_shouldInvalidateOnlyAfterCommit() {
+        // Arrange: A write's transaction is open
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act: The write publishes, then the transaction commits
+        invalidationBus.albumChanged("a1");
+        verifyNoInteractions(albumCache); // a reader could re-cache the old row before the commit
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // Assert
+        verify(albumCache).invalidate("a1");
+    }
+
+    @Test
+    void testAlbumChanged_rolledBack_shouldNotInvalidate() {
+        // Arrange: A write's transaction is open
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act: The write publishes, then the transaction rolls back
+        invalidationBus.albumChanged("a1");
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // Assert: Nothing changed, so nothing is evicted
+        verifyNoInteractions(albumCache);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPublish_withNotifyEnabled_shouldSendPrefixedPayloads() {
+        // Arrange: The listener confirmed the database is Postgres
+        invalidationBus.setNotifyEnabled(true);
+
+        // Act: An album write and a photo write (the photo given as its public URL)
+        invalidationBus.albumChanged("a1");
+        invalidationBus.photoChanged("http://localhost:8080/albums/image/a1.png");
+
+        // Assert: One pg_notify each, on the shared channel, with only the filename for the photo
+        verify(jdbcTemplate).query(eq("SELECT pg_notify(?, ?)"), any(ResultSetExtractor.class),
+                eq(CacheInvalidationBus.CHANNEL), eq("a:a1"));
+        verify(jdbcTemplate).query(eq("SELECT pg_notify(?, ?)"), any(ResultSetExtractor.class),
+                eq(CacheInvalidationBus.CHANNEL), eq("p:a1.png"));
+        verify(imageCache).invalidate("a1.png");
+    }
+
+    @Test
+    void testPublish_withNotifyDisabled_shouldOnlyInvalidateLocally() {
+        // Act: Not on Postgres (e.g. H2) - notifications are off
+        invalidationBus.albumChanged("a1");
+
+        // Assert
+        verifyNoInteractions(jdbcTemplate);
+        verify(albumCache).invalidate("a1");
+    }
+
+    @Test
+    void testApply_shouldHandleEveryMessageKind() {
+        // Act: A batch as the listener hands it over
+        invalidationBus.apply(List.of("a:a1", "p:a2.png", "unknown", CacheInvalidationBus.ALL));
+
+        // Assert: Albums and photos evicted, unknown messages skipped, "*" clears both caches
+        verify(albumCache).invalidate("a1");
+        verify(imageCache).invalidate("a2.png");
+        verify(albumCache).clear();
+        verify(imageCache).clear();
+        verifyNoMoreInteractions(albumCache, imageCache);
+    }
+}
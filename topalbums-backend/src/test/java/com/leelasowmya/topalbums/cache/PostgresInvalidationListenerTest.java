@@ -0,0 +1,86 @@
+package com.leelasowmya.topalbums.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class PostgresInvalidationListenerTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PostgresInvalidationListener listener;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        listener = new PostgresInvalidationListener(dataSource, invalidationBus, true, meterRegistry);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testApplyNextBatch_shouldCollectABurstIntoOneDeduplicatedBatch() throws SQLException {
+        // Arrange: A burst of writes - the same album several times, across two polls - then quiet
+        PGNotification[] firstPoll = notifications("a:1", "a:1", "a:2");
+        PGNotification[] secondPoll = notifications("a:1", "p:cover.png");
+        when(pgConnection.getNotifications(anyInt()))
+                .thenReturn(firstPoll)
+                .thenReturn(secondPoll)
+                .thenReturn(new PGNotification[0]);
+
+        // Act
+        int applied = listener.applyNextBatch(pgConnection);
+
+        // Assert: One apply, each message once, in arrival order
+        ArgumentCaptor<Collection<String>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(invalidationBus, times(1)).apply(batch.capture());
+        assertEquals(List.of("a:1", "a:2", "p:cover.png"), List.copyOf(batch.getValue()));
+        assertEquals(3, applied);
+        assertEquals(5, meterRegistry.counter("albums.cache.notifications.received").count());
+        assertEquals(1, meterRegistry.counter("albums.cache.notifications.batches").count());
+    }
+
+    @Test
+    void testApplyNextBatch_nothingReceived_shouldApplyNothing() throws SQLException {
+        // Arrange: The poll times out (the driver returns null)
+        when(pgConnection.getNotifications(anyInt())).thenReturn(null);
+
+        // Act
+        int applied = listener.applyNextBatch(pgConnection);
+
+        // Assert
+        assertEquals(0, applied);
+        verifyNoInteractions(invalidationBus);
+    }
+
+    private static PGNotification[] notifications(String... payloads) {
+        PGNotification[] notifications = new PGNotification[payloads.length];
+        for (int i = 0; i < payloads.length; i++) {
+            notifications[i] = mock(PGNotification.class);
+            when(notifications[i].getParameter()).thenReturn(payloads[i]);
+        }
+        return notifications;
+    }
+}
@@ -0,0 +1,119 @@
+package com.leelasowmya.topalbums.cache;
+
+import com.leelasowmya.topalbums.exception.AlbumNotFoundException;
+import com.leelasowmya.topalbums.exception.LoadTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testLoad_concurrentCallersShareOneLoad() throws Exception {
+        // Arrange: A loader that blocks until every caller has joined, and counts how often it runs
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", Duration.ofSeconds(5), meterRegistry);
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        // Act: Fire all callers at the same key while the first load is still in flight
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> singleFlight.load("album-1", () -> {
+                loaderCalls.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "loaded";
+            })));
+        }
+        // Wait until the other callers have joined the in-flight load before letting it finish
+        while (meterRegistry.counter("albums.singleflight.coalesced", "name", "test").count() < callers - 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        // Assert: Everyone got the value but the loader only ran once
+        for (Future<String> result : results) {
+            assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loaderCalls.get());
+        assertEquals(1, meterRegistry.counter("albums.singleflight.loads", "name", "test").count());
+        executor.shutdown();
+    }
+
+    @Test
+    void testLoad_waitersReceiveTheLoadersException() throws Exception {
+        // Arrange: A loader that fails once a second caller has joined
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        Future<?> leader = executor.submit(() -> singleFlight.load("missing", () -> {
+            loaderStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new AlbumNotFoundException("Album with ID missing not found");
+        }));
+        loaderStarted.await();
+
+        // Act: Join the in-flight load from this thread, then let the loader fail
+        new Thread(() -> {
+            while (meterRegistry.counter("albums.singleflight.coalesced", "name", "test").count() < 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+        }).start();
+
+        // Assert: The waiter sees the original exception type, not a wrapper
+        assertThrows(AlbumNotFoundException.class, () -> singleFlight.load("missing", () -> "not used"));
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    void testLoad_waiterTimesOut() throws Exception {
+        // Arrange: A load that never finishes within the 50ms waiter timeout
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", Duration.ofMillis(50), meterRegistry);
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> singleFlight.load("slow", () -> {
+            loaderStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "late";
+        }));
+        loaderStarted.await();
+
+        // Act + Assert: The waiter gives up with LoadTimeoutException (-> 503) instead of hanging
+        assertThrows(LoadTimeoutException.class, () -> singleFlight.load("slow", () -> "not used"));
+        assertEquals(1, meterRegistry.counter("albums.singleflight.timeouts", "name", "test").count());
+
+        release.countDown();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,164 @@
+package com.leelasowmya.topalbums.changes;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumTombstone;
+import com.leelasowmya.topalbums.exception.ChangeTokenExpiredException;
+import com.leelasowmya.topalbums.exception.InvalidRequestException;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import com.leelasowmya.topalbums.repository.AlbumTombstoneRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The change feed against real (H2) tables; writes are made the way AlbumService makes them
+@DataJpaTest(properties = "app.changes.tombstone-retention=7d")
+@Import({ChangeFeedService.class, ChangeFeedServiceTest.Metrics.class})
+class ChangeFeedServiceTest {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private ChangeFeedService changeFeed;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private AlbumTombstoneRepository tombstoneRepository;
+
+    @Test
+    void testChangesSince_shouldReturnOnlyChangesAfterTheToken() {
+        // Arrange: Three albums, then sync to the current token
+        Album first = create("First");
+        Album second = create("Second");
+        Album third = create("Third");
+        long token = changeFeed.changesSince(0, 100).next();
+
+        // Act: Update one album, delete another, then ask for what changed
+        second.setName("Second (Remastered)");
+        second.setChangeSeq(changeFeed.nextChangeSeq());
+        albumRepository.saveAndFlush(second);
+        albumRepository.delete(third);
+        changeFeed.recordDelete(third.getId());
+        AlbumChanges changes = changeFeed.changesSince(token, 100);
+
+        // Assert: Only the update and the delete - the untouched album isn't sent again
+        assertEquals(List.of("Second (Remastered)"), changes.albums().stream().map(Album::getName).toList());
+        assertEquals(List.of(third.getId()), changes.deleted().stream().map(AlbumTombstone::getAlbumId).toList());
+        assertFalse(changes.hasMore());
+        assertTrue(changes.next() > token);
+        assertTrue(changeFeed.changesSince(changes.next(), 100).albums().isEmpty());
+        assertNotNull(first.getChangeSeq());
+    }
+
+    @Test
+    void testChangesSince_shouldPageThroughChangesInOrder() {
+        // Arrange: Five albums, the middle one deleted
+        List<Album> albums = List.of(create("A"), create("B"), create("C"), create("D"), create("E"));
+        albumRepository.delete(albums.get(2));
+        changeFeed.recordDelete(albums.get(2).getId());
+
+        // Act: Follow the tokens two changes at a time
+        AlbumChanges page1 = changeFeed.changesSince(0, 2);
+        AlbumChanges page2 = changeFeed.changesSince(page1.next(), 2);
+        AlbumChanges page3 = changeFeed.changesSince(page2.next(), 2);
+
+        // Assert: Every change exactly once, in sequence order, and the last page says it's the end
+        assertEquals(List.of("A", "B"), page1.albums().stream().map(Album::getName).toList());
+        assertEquals(List.of("D", "E"), page2.albums().stream().map(Album::getName).toList());
+        assertEquals(1, page3.deleted().size());
+        assertTrue(page1.hasMore());
+        assertTrue(page2.hasMore());
+        assertFalse(page3.hasMore());
+    }
+
+    @Test
+    void testChangesSince_outOfRangeArguments_shouldBeRejected() {
+        // Act + Assert: Refused (400) rather than silently clamped, so a client learns its limit isn't honoured
+        assertThrows(InvalidRequestException.class, () -> changeFeed.changesSince(0, 5000));
+        assertThrows(InvalidRequestException.class, () -> changeFeed.changesSince(0, 0));
+        assertThrows(InvalidRequestException.class, () -> changeFeed.changesSince(-1, 100));
+    }
+
+    @Test
+    void testCompactTombstones_shouldExpireOlderTokens() {
+        // Arrange: A delete from well before the 7 day retention, then a newer album
+        create("Old");
+        long oldToken = changeFeed.changesSince(0, 100).next();
+        tombstoneRepository.save(new AlbumTombstone(changeFeed.nextChangeSeq(), "deleted-album",
+                LocalDateTime.now().minusDays(30)));
+        create("New");
+
+        // Act
+        changeFeed.compactTombstones();
+
+        // Assert: The old token might have missed the compacted delete, so it's refused; a full sync still works
+        assertEquals(0, tombstoneRepository.count());
+        assertThrows(ChangeTokenExpiredException.class, () -> changeFeed.changesSince(oldToken, 100));
+        assertEquals(List.of("Old", "New"),
+                changeFeed.changesSince(0, 100).albums().stream().map(Album::getName).toList());
+    }
+
+    @Test
+    void testAssignMissingChangeSeqs_shouldNumberAlbumsWrittenBeforeTheFeed() {
+        // Arrange: Albums saved without a sequence number (pre-existing rows, or a snapshot restore)
+        for (int i = 0; i < 3; i++) {
+            Album album = new Album();
+            album.setName("Legacy " + i);
+            album.setArtist("Artist");
+            albumRepository.saveAndFlush(album);
+        }
+
+        // Act
+        int assigned = changeFeed.assignMissingChangeSeqs();
+
+        // Assert: They now show up in a full sync
+        assertEquals(3, assigned);
+        assertEquals(3, changeFeed.changesSince(0, 100).albums().size());
+    }
+
+    @Test
+    void testAssignMissingChangeSeqs_shouldMoveCounterPastRestoredNumbers() {
+        // Arrange: A mirror in sync with the current log, then a restored album numbered well ahead of it
+        create("Before restore");
+        long oldToken = changeFeed.changesSince(0, 100).next();
+        Album restored = new Album();
+        restored.setName("Restored");
+        restored.setArtist("Artist");
+        restored.setChangeSeq(oldToken + 50);
+        albumRepository.saveAndFlush(restored);
+
+        // Act
+        changeFeed.assignMissingChangeSeqs();
+        Album created = create("After restore");
+
+        // Assert: New numbers don't collide with restored ones, and tokens from the old history are refused
+        assertTrue(created.getChangeSeq() > restored.getChangeSeq());
+        assertThrows(ChangeTokenExpiredException.class, () -> changeFeed.changesSince(oldToken, 100));
+        assertEquals(3, changeFeed.changesSince(0, 100).albums().size());
+    }
+
+    private Album create(String name) {
+        Album album = new Album();
+        album.setName(name);
+        album.setArtist("Artist");
+        album.setChangeSeq(changeFeed.nextChangeSeq());
+        return albumRepository.saveAndFlush(album);
+    }
+}
@@ -2,25 +2,30 @@ package com.leelasowmya.topalbums.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumFilter;
 import com.leelasowmya.topalbums.exception.AlbumNotFoundException;
+import com.leelasowmya.topalbums.exception.InvalidRequestException;
+import com.leelasowmya.topalbums.exception.PhotoNotFoundException;
+import com.leelasowmya.topalbums.ingest.TestImages;
+import com.leelasowmya.topalbums.service.AlbumPhoto;
 import com.leelasowmya.topalbums.service.AlbumService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.UUID;
 
-import static com.leelasowmya.topalbums.constant.Constant.PHOTO_DIRECTORY;
 import static com.leelasowmya.topalbums.constant.Constant.PHOTO_PUBLIC_URL;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -107,7 +112,7 @@ class AlbumControllerTest {
         List<Album> mockAlbums = List.of(album1, album2);
 
         // Stub: Mock the service to return this list wrapped in a Page object
-        when(albumService.getAllAlbums(0, 10)).thenReturn(new PageImpl<>(mockAlbums));
+        when(albumService.getAllAlbums(AlbumFilter.none(), null, 0, 10)).thenReturn(new PageImpl<>(mockAlbums));
 
         // Act + Assert:
         // Send a real HTTP GET request to /albums?page=0&size=10
@@ -118,7 +123,60 @@ class AlbumControllerTest {
                 .andExpect(jsonPath("$.content[1].artist").value("Artist2"));
 
         // Verify: Confirm the pagination values were passed correctly to the service
-        verify(albumService).getAllAlbums(0, 10);
+        verify(albumService).getAllAlbums(AlbumFilter.none(), null, 0, 10);
+    }
+
+    @Test
+    void testGetAllAlbums_shouldKeepThePageEnvelopeJacksonWrites() throws Exception {
+        // Arrange: Page 2 of a sorted listing, with versioned albums (the ones AlbumJsonConverter caches)
+        Album album = new Album();
+        album.setId("1");
+        album.setName("A1");
+        album.setArtist("Artist1");
+        album.setVersion(3L);
+        Page<Album> page = new PageImpl<>(List.of(album), PageRequest.of(1, 1, Sort.by("name")), 3);
+        when(albumService.getAllAlbums(AlbumFilter.none(), null, 1, 1)).thenReturn(page);
+
+        // Act + Assert: The whole body is what plain Jackson writes for the page - pageable and sort included -
+        // so clients reading the PageImpl serialization see no difference
+        mockMvc.perform(get("/albums?page=1&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(page), true))
+                .andExpect(jsonPath("$.pageable.pageNumber").value(1))
+                .andExpect(jsonPath("$.sort.sorted").value(true))
+                .andExpect(jsonPath("$.totalPages").value(3));
+    }
+
+    @Test
+    void testGetAllAlbums_withFiltersAndSort_shouldPassThemToService() throws Exception {
+        // Arrange: "albums by Artist1 from the 90s that have a cover, sorted by name"
+        AlbumFilter expectedFilter = new AlbumFilter("Artist1", null, "1990", "1999", true);
+        List<String> expectedSort = List.of("name", "-releaseYear");
+        when(albumService.getAllAlbums(expectedFilter, expectedSort, 0, 10)).thenReturn(new PageImpl<>(List.of()));
+
+        // Act + Assert: Filters arrive as query params, sort as a comma separated list
+        mockMvc.perform(get("/albums")
+                        .param("artist", "Artist1")
+                        .param("yearFrom", "1990")
+                        .param("yearTo", "1999")
+                        .param("hasPhoto", "true")
+                        .param("sort", "name,-releaseYear"))
+                .andExpect(status().isOk());
+
+        // Verify: The service received exactly the filter and sort we asked for
+        verify(albumService).getAllAlbums(expectedFilter, expectedSort, 0, 10);
+    }
+
+    @Test
+    void testGetAllAlbums_unknownSortField_shouldReturn400() throws Exception {
+        // Stub: The service rejects fields that aren't whitelisted
+        when(albumService.getAllAlbums(any(AlbumFilter.class), eq(List.of("albumUrl")), eq(0), eq(10)))
+                .thenThrow(new InvalidRequestException("Cannot sort by 'albumUrl'"));
+
+        // Act + Assert: Bad sort fields are a client error
+        mockMvc.perform(get("/albums").param("sort", "albumUrl"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Cannot sort by 'albumUrl'"));
     }
 
     @Test
@@ -179,6 +237,21 @@ class AlbumControllerTest {
         // Spring rejects the request before that due to validation failure
     }
 
+    @Test
+    void testCreateAlbum_withMalformedReleaseYear_shouldReturn400() throws Exception {
+        // Act + Assert: Years are compared as strings when filtering, so anything but 4 digits is refused
+        for (String year : new String[] { "99", "1999 ", "19990" }) {
+            mockMvc.perform(post("/albums")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Album\",\"artist\":\"Artist\",\"releaseYear\":\"" + year + "\"}"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.releaseYear").value("Release year must be 4 digits, e.g. 1969"));
+        }
+
+        // Verify: None of them reached the service
+        verifyNoInteractions(albumService);
+    }
+
     @Test
     void testDeleteAlbum_success() throws Exception {
         // Arrange: Set up mock behavior - no return, just a void method
@@ -230,24 +303,45 @@ class AlbumControllerTest {
     @Test
     void testGetAlbumPhoto_success() throws Exception {
         // Arrange:
-        // Define a mock filename and create a temporary file with dummy content
+        // Define a mock filename and dummy content the service will hand back
         String filename = "mock-cover.jpg";
         byte[] mockImageContent = "mock image data".getBytes();
 
-        // Write the mock file to the same PHOTO_DIRECTORY path used by the controller
-        Path imagePath = Paths.get(PHOTO_DIRECTORY + filename); // Matches PHOTO_DIRECTORY + filename
-        Files.createDirectories(imagePath.getParent());    // Ensure directory exists
-        Files.write(imagePath, mockImageContent);          // Write content to disk
+        // Stub: The service now owns reading the file (so concurrent reads can be coalesced)
+        when(albumService.getAlbumPhoto(filename)).thenReturn(AlbumPhoto.cached(ByteBuffer.wrap(mockImageContent)));
 
         // Act + Assert:
         // Perform GET request to /albums/image/{filename}
-        // Expect 200 OK and the exact content we wrote
+        // Expect 200 OK and the exact content returned by the service
         mockMvc.perform(get("/albums/image/{filename}", filename))
                 .andExpect(status().isOk())  // Response should be 200
                 .andExpect(content().bytes(mockImageContent)); // Body must match file content
 
-        // Cleanup: Remove the test file after verification
-        Files.deleteIfExists(imagePath);
+        // Verify: Ensure the service was asked for the right file
+        verify(albumService).getAlbumPhoto(filename);
+    }
+
+    @Test
+    void testGetAlbumPhoto_shouldSendTheImagesOwnContentType() throws Exception {
+        // Arrange: A WebP cover (ImageIngest stores GIF and WebP too, not just PNG / JPEG)
+        byte[] webp = TestImages.webp(300, 300);
+        when(albumService.getAlbumPhoto("cover.webp")).thenReturn(AlbumPhoto.cached(ByteBuffer.wrap(webp)));
+
+        // Act + Assert: Served as image/webp, even to a client that asks for it explicitly
+        mockMvc.perform(get("/albums/image/{filename}", "cover.webp").accept("image/webp"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/webp"))
+                .andExpect(content().bytes(webp));
+    }
+
+    @Test
+    void testGetAlbumPhoto_notFound_shouldReturn404() throws Exception {
+        // Stub: Simulate a missing image file
+        when(albumService.getAlbumPhoto("missing.png")).thenThrow(new PhotoNotFoundException("Image missing.png not found"));
+
+        // Act + Assert: Missing images are a 404, not a 500
+        mockMvc.perform(get("/albums/image/{filename}", "missing.png"))
+                .andExpect(status().isNotFound());
     }
 
 }
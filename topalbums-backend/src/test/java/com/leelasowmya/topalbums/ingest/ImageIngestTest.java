@@ -0,0 +1,162 @@
+package com.leelasowmya.topalbums.ingest;
+
+import com.leelasowmya.topalbums.exception.ImageTooLargeException;
+import com.leelasowmya.topalbums.exception.InvalidImageException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageIngestTest {
+
+    @TempDir
+    Path directory;
+
+    private ImageIngest imageIngest;
+
+    @BeforeEach
+    void setUp() {
+        // Small limits so the tests can hit them with tiny files
+        imageIngest = new ImageIngest(DataSize.ofKilobytes(64), 1_000_000, 2000, new SimpleMeterRegistry());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("supportedImages")
+    void testReadHeader_shouldDetectFormatAndDimensions(ImageFormat format, byte[] image) throws IOException {
+        // Act: Parse only the header
+        ImageInfo info = ImageHeaderReader.read(new ByteArrayInputStream(image));
+
+        // Assert
+        assertEquals(new ImageInfo(format, 640, 480), info);
+    }
+
+    static Stream<Arguments> supportedImages() {
+        return Stream.of(
+                Arguments.of(ImageFormat.PNG, TestImages.png(640, 480)),
+                Arguments.of(ImageFormat.JPEG, TestImages.jpeg(640, 480)),
+                Arguments.of(ImageFormat.GIF, TestImages.gif(640, 480)),
+                Arguments.of(ImageFormat.WEBP, TestImages.webp(640, 480))
+        );
+    }
+
+    @Test
+    void testStore_shouldNameFileByRealFormatNotClientFilename() throws IOException {
+        // Arrange: A PNG uploaded with a .jpg name
+        byte[] png = TestImages.png(300, 300);
+        MockMultipartFile upload = new MockMultipartFile("file", "cover.jpg", "image/jpeg", png);
+
+        // Act
+        String filename = imageIngest.store(upload, directory, "album-1");
+
+        // Assert: Stored as .png with the exact bytes, and no temp files left behind
+        assertEquals("album-1.png", filename);
+        assertArrayEquals(png, Files.readAllBytes(directory.resolve(filename)));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testStore_shouldRejectNonImagesAndMalformedHeaders() throws IOException {
+        // Arrange: Plain text, and a JPEG cut off before its frame header
+        MockMultipartFile text = new MockMultipartFile("file", "cover.png", "image/png", "dummy image content".getBytes());
+        byte[] jpeg = TestImages.jpeg(100, 100);
+        MockMultipartFile truncated = new MockMultipartFile("file", "cover.jpg", "image/jpeg", Arrays.copyOf(jpeg, 8));
+
+        // Act + Assert
+        assertThrows(InvalidImageException.class, () -> imageIngest.store(text, directory, "album-1"));
+        assertThrows(InvalidImageException.class, () -> imageIngest.store(truncated, directory, "album-1"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count(), "Rejected uploads must not leave files behind");
+        }
+    }
+
+    @Test
+    void testStore_shouldRejectDecompressionBombFromHeaderAlone() throws IOException {
+        // Arrange: A header claiming 1999x1999 (under the side limit, over the 1MP pixel limit), followed by
+        // a body that would be far over the byte limit - it must never be read
+        byte[] header = TestImages.png(1999, 1999);
+        CountingStream body = new CountingStream(header, 10_000_000);
+        MockMultipartFile upload = new MockMultipartFile("file", "bomb.png", "image/png", new byte[0]) {
+            @Override
+            public InputStream getInputStream() {
+                return body;
+            }
+        };
+
+        // Act + Assert
+        assertThrows(ImageTooLargeException.class, () -> imageIngest.store(upload, directory, "album-1"));
+        assertTrue(body.served < 1024, "Only the header should have been read, but read " + body.served + " bytes");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testStore_shouldStopStreamingOnceOverByteLimit() throws IOException {
+        // Arrange: A valid small header, but the body keeps going past the 64KB limit (declared size is 0, a lie)
+        CountingStream body = new CountingStream(TestImages.png(100, 100), 10_000_000);
+        MockMultipartFile upload = new MockMultipartFile("file", "big.png", "image/png", new byte[0]) {
+            @Override
+            public InputStream getInputStream() {
+                return body;
+            }
+        };
+
+        // Act + Assert: Rejected soon after crossing the limit, and the partial file is cleaned up
+        assertThrows(ImageTooLargeException.class, () -> imageIngest.store(upload, directory, "album-1"));
+        assertTrue(body.served < 128 * 1024, "Should stop shortly after the limit, read " + body.served + " bytes");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    // Serves the given header followed by `padding` zero bytes, generated on the fly, and counts what was read
+    private static class CountingStream extends InputStream {
+        private final byte[] header;
+        private final long length;
+        long served;
+
+        CountingStream(byte[] header, long padding) {
+            this.header = header;
+            this.length = header.length + padding;
+        }
+
+        @Override
+        public int read() {
+            if (served >= length) {
+                return -1;
+            }
+            int b = served < header.length ? header[(int) served] & 0xFF : 0;
+            served++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int len) {
+            if (served >= length) {
+                return -1;
+            }
+            int n = (int) Math.min(len, length - served);
+            for (int i = 0; i < n; i++) {
+                buffer[offset + i] = (byte) read();
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.leelasowmya.topalbums.ingest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Smallest byte sequences that carry a valid header for each format - enough for ImageHeaderReader,
+// which never looks past the dimensions. Used by tests that upload covers
+public final class TestImages {
+    private TestImages() {
+    }
+
+    // Signature + IHDR chunk (+ a few body bytes so files differ in size)
+    public static byte[] png(int width, int height) {
+        return ByteBuffer.allocate(33)
+                .put(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A})
+                .putInt(13).put(new byte[]{'I', 'H', 'D', 'R'})
+                .putInt(width).putInt(height)
+                .put(new byte[]{8, 6, 0, 0, 0})
+                .putInt(0) // CRC - not checked
+                .array();
+    }
+
+    // SOI, an APP1 segment the reader has to skip, then SOF0 with the dimensions, then EOI
+    public static byte[] jpeg(int width, int height) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD8});
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xE1, 0, 8, 'E', 'x', 'i', 'f', 0, 0});
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xC0, 0, 11, 8,
+                (byte) (height >> 8), (byte) height, (byte) (width >> 8), (byte) width, 1, 1, 0x11, 0});
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD9});
+        return out.toByteArray();
+    }
+
+    public static byte[] gif(int width, int height) {
+        return ByteBuffer.allocate(13).order(ByteOrder.LITTLE_ENDIAN)
+                .put(new byte[]{'G', 'I', 'F', '8', '9', 'a'})
+                .putShort((short) width).putShort((short) height)
+                .put(new byte[]{0, 0, 0})
+                .array();
+    }
+
+    // Extended (VP8X) WebP: 24 bit (width - 1) and (height - 1)
+    public static byte[] webp(int width, int height) {
+        ByteBuffer buffer = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN)
+                .put(new byte[]{'R', 'I', 'F', 'F'}).putInt(22)
+                .put(new byte[]{'W', 'E', 'B', 'P', 'V', 'P', '8', 'X'}).putInt(10)
+                .putInt(0);
+        putInt24(buffer, width - 1);
+        putInt24(buffer, height - 1);
+        return buffer.array();
+    }
+
+    private static void putInt24(ByteBuffer buffer, int value) {
+        buffer.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16));
+    }
+}
@@ -0,0 +1,70 @@
+package com.leelasowmya.topalbums.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadSizeFilterTest {
+
+    private final UploadSizeFilter filter = new UploadSizeFilter(DataSize.ofMegabytes(21));
+
+    @Test
+    void testUpload_declaredOverLimit_shouldBeRejectedWithoutReadingTheBody() throws Exception {
+        // Arrange: A cover upload declaring a 100MB body
+        MockHttpServletRequest request = request("PUT", "/albums/a1/image", DataSize.ofMegabytes(100).toBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(request, response, chain);
+
+        // Assert: 413 straight away, the request never reaches the controller
+        assertEquals(413, response.getStatus());
+        assertTrue(response.getContentAsString().contains("\"error\""));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void testUpload_withinLimitOrUndeclared_shouldPassThrough() throws Exception {
+        // Arrange: One upload under the limit, one chunked (no Content-Length, capped while it's read)
+        MockHttpServletRequest small = request("PUT", "/albums/a1/image", 1024);
+        MockHttpServletRequest chunked = request("PUT", "/albums/a1/image", -1);
+        MockFilterChain smallChain = new MockFilterChain();
+        MockFilterChain chunkedChain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(small, new MockHttpServletResponse(), smallChain);
+        filter.doFilter(chunked, new MockHttpServletResponse(), chunkedChain);
+
+        // Assert
+        assertSame(small, smallChain.getRequest());
+        assertSame(chunked, chunkedChain.getRequest());
+    }
+
+    @Test
+    void testOtherEndpoints_shouldNotBeChecked() throws Exception {
+        // Arrange: A large body to an endpoint that isn't the cover upload
+        MockHttpServletRequest request = request("POST", "/albums", DataSize.ofMegabytes(100).toBytes());
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertSame(request, chain.getRequest());
+    }
+
+    // The mock derives the length from its (here empty) content; the filter only ever sees the declared header
+    private static MockHttpServletRequest request(String method, String uri, long declaredLength) {
+        return new MockHttpServletRequest(method, uri) {
+            @Override
+            public long getContentLengthLong() {
+                return declaredLength;
+            }
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package com.leelasowmya.topalbums.ranking;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The batched upsert is Postgres-only SQL (INSERT ... ON CONFLICT DO UPDATE, which H2 can't parse even in
+// PostgreSQL mode), so the real flush runs against a real Postgres; skipped where Docker isn't available
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({PlayCounterService.class, PlayCounterServicePostgresTest.Metrics.class})
+class PlayCounterServicePostgresTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private PlayCounterService playCounterService;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testFlush_shouldUpsertOneRowPerAlbumAndSkipMissingAlbums() {
+        // Arrange: Two albums, plus plays for an id that was never an album
+        String first = save("Abbey Road");
+        String second = save("Revolver");
+        for (int i = 0; i < 5; i++) {
+            playCounterService.recordPlay(first);
+        }
+        playCounterService.recordPlay(second);
+        playCounterService.recordPlay("no-such-album");
+
+        // Act: Two flushes in the same hour, the second adding to the rows the first created
+        playCounterService.flush();
+        playCounterService.recordPlay(first);
+        playCounterService.flush();
+
+        // Assert: One row per existing album, counts summed across flushes; the unknown id wrote nothing
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM album_plays", Integer.class));
+        assertEquals(Map.of(first, 6L, second, 1L), plays());
+    }
+
+    private Map<String, Long> plays() {
+        return jdbcTemplate.query("SELECT album_id, plays FROM album_plays", rs -> {
+            Map<String, Long> plays = new HashMap<>();
+            while (rs.next()) {
+                plays.put(rs.getString(1), rs.getLong(2));
+            }
+            return plays;
+        });
+    }
+
+    private String save(String name) {
+        Album album = new Album();
+        album.setName(name);
+        album.setArtist("The Beatles");
+        return albumRepository.saveAndFlush(album).getId();
+    }
+}
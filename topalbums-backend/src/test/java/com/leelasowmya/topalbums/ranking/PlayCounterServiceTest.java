@@ -0,0 +1,240 @@
+package com.leelasowmya.topalbums.ranking;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.repository.AlbumPlayCountRepository;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PlayCounterServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private AlbumRepository albumRepository;
+
+    @Mock
+    private AlbumPlayCountRepository playCountRepository;
+
+    private final FakeTransactionManager transactionManager = new FakeTransactionManager();
+
+    private PlayCounterService playCounterService;
+
+    // Moved by the tests to play across an hour boundary
+    private Instant now = Instant.parse("2025-01-02T10:30:00Z");
+
+    // Runs transaction callbacks with synchronization (like the real one) and can be told to fail the commit
+    static class FakeTransactionManager extends AbstractPlatformTransactionManager {
+        boolean failCommit;
+        int rollbacks;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            if (failCommit) {
+                throw new TransactionSystemException("Connection lost during commit");
+            }
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rollbacks++;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        playCounterService = new PlayCounterService(jdbcTemplate, albumRepository, playCountRepository,
+                transactionManager, new Clock() {
+                    @Override
+                    public ZoneOffset getZone() {
+                        return ZoneOffset.UTC;
+                    }
+
+                    @Override
+                    public Clock withZone(ZoneId zone) {
+                        return this;
+                    }
+
+                    @Override
+                    public Instant instant() {
+                        return now;
+                    }
+                }, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_shouldWriteOneBatchedRowPerAlbumNotOnePerPlay() {
+        // Arrange: 10,000 plays for album "a" and 3 for album "b", recorded from many threads
+        IntStream.range(0, 10_000).parallel().forEach(i -> playCounterService.recordPlay("a"));
+        IntStream.range(0, 3).forEach(i -> playCounterService.recordPlay("b"));
+
+        ArgumentCaptor<List<Map.Entry<PlayCounterService.PlayKey, Long>>> rowsCaptor = ArgumentCaptor.forClass(List.class);
+        when(jdbcTemplate.batchUpdate(anyString(), rowsCaptor.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenReturn(new int[][] { { 1, 1 } });
+
+        // Act: One scheduled flush
+        playCounterService.flush();
+
+        // Assert: A single batch with one summed row per album
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(Map.of("a", 10_000L, "b", 3L), byAlbum(rowsCaptor.getValue()));
+
+        // And the flushed counts are what GET /albums/top ranks on
+        Album albumA = new Album();
+        albumA.setId("a");
+        Album albumB = new Album();
+        albumB.setId("b");
+        when(albumRepository.findAllById(List.of("a", "b"))).thenReturn(List.of(albumB, albumA));
+        List<AlbumRank> top = playCounterService.getTopAlbums(RankingWindow.HOUR, 10);
+        assertEquals(List.of(10_000L, 3L), top.stream().map(AlbumRank::plays).toList());
+        assertEquals("a", top.get(0).album().getId());
+    }
+
+    @Test
+    void testFlush_shouldKeepCountsWhenDatabaseWriteFails() {
+        // Arrange: The first flush fails, the second succeeds
+        playCounterService.recordPlay("a");
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new RuntimeException("DB down"))
+                .thenReturn(new int[][] { { 1 } });
+
+        // Act
+        playCounterService.flush();
+        playCounterService.flush();
+
+        // Assert: The batch's transaction rolled back, so the play was retried rather than lost
+        assertEquals(1, transactionManager.rollbacks);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_shouldWriteRowsInAlbumIdOrder() {
+        // Arrange: Plays recorded in an order unrelated to the album ids
+        List.of("m", "c", "x", "a", "q").forEach(playCounterService::recordPlay);
+        ArgumentCaptor<List<Map.Entry<PlayCounterService.PlayKey, Long>>> rowsCaptor = ArgumentCaptor.forClass(List.class);
+        when(jdbcTemplate.batchUpdate(anyString(), rowsCaptor.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenReturn(new int[][] { { 1, 1, 1, 1, 1 } });
+
+        // Act
+        playCounterService.flush();
+
+        // Assert: Sorted, so concurrent flushes on other nodes take the row locks in the same order
+        assertEquals(List.of("a", "c", "m", "q", "x"),
+                rowsCaptor.getValue().stream().map(row -> row.getKey().albumId()).toList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_deadlock_shouldRetryTheBatch() {
+        // Arrange: The database picks this flush as the deadlock victim, the next one goes through
+        playCounterService.recordPlay("a");
+        playCounterService.recordPlay("a");
+        ArgumentCaptor<List<Map.Entry<PlayCounterService.PlayKey, Long>>> rowsCaptor = ArgumentCaptor.forClass(List.class);
+        when(jdbcTemplate.batchUpdate(anyString(), rowsCaptor.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new CannotAcquireLockException("deadlock detected"))
+                .thenReturn(new int[][] { { 1 } });
+
+        // Act
+        playCounterService.flush();
+        playCounterService.flush();
+
+        // Assert: The rolled back batch is written again in full rather than dropped
+        assertEquals(1, transactionManager.rollbacks);
+        assertEquals(Map.of("a", 2L), byAlbum(rowsCaptor.getAllValues().get(1)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_afterTheHourTurns_shouldKeepPlaysInTheHourTheyWereCounted() {
+        // Arrange: Two plays just before 11:00, one just after, all flushed at 11:00:01
+        now = Instant.parse("2025-01-02T10:59:58Z");
+        playCounterService.recordPlay("a");
+        playCounterService.recordPlay("a");
+        now = Instant.parse("2025-01-02T11:00:00Z");
+        playCounterService.recordPlay("a");
+        now = Instant.parse("2025-01-02T11:00:01Z");
+        ArgumentCaptor<List<Map.Entry<PlayCounterService.PlayKey, Long>>> rowsCaptor = ArgumentCaptor.forClass(List.class);
+        when(jdbcTemplate.batchUpdate(anyString(), rowsCaptor.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenReturn(new int[][] { { 1, 1 } });
+
+        // Act
+        playCounterService.flush();
+
+        // Assert: One row per hour the plays happened in, not everything in the hour of the flush
+        Map<LocalDateTime, Long> byHour = rowsCaptor.getValue().stream()
+                .collect(Collectors.toMap(row -> row.getKey().bucketStart(), Map.Entry::getValue));
+        assertEquals(Map.of(LocalDateTime.of(2025, 1, 2, 10, 0), 2L, LocalDateTime.of(2025, 1, 2, 11, 0), 1L), byHour);
+
+        // And only the current hour's play counts for the last hour
+        Album album = new Album();
+        album.setId("a");
+        when(albumRepository.findAllById(List.of("a"))).thenReturn(List.of(album));
+        assertEquals(1L, playCounterService.getTopAlbums(RankingWindow.HOUR, 10).get(0).plays());
+    }
+
+    @Test
+    void testFlush_commitOutcomeUnknown_shouldNotRetry() {
+        // Arrange: The batch runs, but the commit fails without saying whether it happened
+        playCounterService.recordPlay("a");
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenReturn(new int[][] { { 1 } });
+        transactionManager.failCommit = true;
+
+        // Act
+        playCounterService.flush();
+        transactionManager.failCommit = false;
+        playCounterService.flush();
+
+        // Assert: The plays may already be in album_plays - writing them again could count them twice
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void testFlush_withNothingRecorded_shouldNotTouchDatabase() {
+        playCounterService.flush();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    // Batch rows summed per album, whatever hours they're in
+    private static Map<String, Long> byAlbum(List<Map.Entry<PlayCounterService.PlayKey, Long>> rows) {
+        return rows.stream().collect(Collectors.toMap(row -> row.getKey().albumId(), Map.Entry::getValue, Long::sum));
+    }
+}
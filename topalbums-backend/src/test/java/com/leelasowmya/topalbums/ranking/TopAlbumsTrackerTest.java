@@ -0,0 +1,56 @@
+package com.leelasowmya.topalbums.ranking;
+
+import com.leelasowmya.topalbums.exception.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopAlbumsTrackerTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    @Test
+    void testTop_shouldRankByPlaysWithinWindow() {
+        // Arrange: Three albums with plays in the current hour
+        TopAlbumsTracker tracker = new TopAlbumsTracker(NOON);
+        tracker.add("a", NOON, 5);
+        tracker.add("b", NOON, 12);
+        tracker.add("c", NOON, 8);
+
+        // Act: Later flushes keep adding to the same albums
+        tracker.add("a", NOON, 10);
+
+        // Assert: Ranking reflects the running totals, highest first, cut at the limit
+        assertEquals(List.of(new TopAlbumsTracker.Ranked("a", 15), new TopAlbumsTracker.Ranked("b", 12)),
+                tracker.top(RankingWindow.HOUR, 2));
+    }
+
+    @Test
+    void testAdvanceTo_shouldDropHoursThatLeaveTheWindow() {
+        // Arrange: "old" was played two hours ago, "new" this hour
+        TopAlbumsTracker tracker = new TopAlbumsTracker(NOON);
+        tracker.add("old", NOON.minusHours(2), 100);
+        tracker.add("new", NOON, 1);
+
+        // Assert: The 1h window only has this hour's plays, the 24h window has both
+        assertEquals(List.of(new TopAlbumsTracker.Ranked("new", 1)), tracker.top(RankingWindow.HOUR, 10));
+        assertEquals("old", tracker.top(RankingWindow.DAY, 10).get(0).albumId());
+
+        // Act: A day later the old plays have fallen out of the 24h window but not the 7d one
+        tracker.advanceTo(NOON.plusHours(22).plusMinutes(30));
+
+        // Assert
+        assertEquals(List.of(new TopAlbumsTracker.Ranked("new", 1)), tracker.top(RankingWindow.DAY, 10));
+        assertEquals(2, tracker.top(RankingWindow.WEEK, 10).size());
+        assertTrue(tracker.top(RankingWindow.HOUR, 10).isEmpty());
+    }
+
+    @Test
+    void testFromParam_shouldRejectUnknownWindow() {
+        assertEquals(RankingWindow.WEEK, RankingWindow.fromParam("7d"));
+        assertThrows(InvalidRequestException.class, () -> RankingWindow.fromParam("2y"));
+    }
+}
@@ -1,21 +1,43 @@
 package com.leelasowmya.topalbums.repository;
 
+import com.leelasowmya.topalbums.budget.SqlRecorder;
 import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.domain.AlbumFilter;
+import com.leelasowmya.topalbums.exception.InvalidRequestException;
+import jakarta.validation.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@DataJpaTest // Loads only JPA-related components (fast & lightweight)
+// Loads only JPA-related components (fast & lightweight)
+// SqlRecorder captures the SQL Hibernate generates so the query-plan tests can EXPLAIN it
+@DataJpaTest
+@Import(SqlRecorder.class)
 class AlbumRepositoryTest {
 
     @Autowired
     private AlbumRepository albumRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     void testSaveAndFindById_shouldReturnSavedAlbum() {
         // Arrange: Creating a test album entity with sample values
@@ -47,6 +69,18 @@ class AlbumRepositoryTest {
         System.out.println("Album saved and successfully retrieved by ID.");
     }
 
+    @Test
+    void testSave_withMalformedReleaseYear_shouldBeRejected() {
+        // Arrange: A two-digit year, the kind an import could carry in
+        Album album = new Album();
+        album.setName("Imported");
+        album.setArtist("Artist");
+        album.setReleaseYear("99");
+
+        // Act + Assert: Hibernate validates before the insert, whoever is writing - not just the REST API
+        assertThrows(ConstraintViolationException.class, () -> albumRepository.saveAndFlush(album));
+    }
+
     @Test
     void testFindById_shouldReturnEmptyIfNotFound() {
         // Arrange: Random ID not present in DB
@@ -60,4 +94,171 @@ class AlbumRepositoryTest {
 
         System.out.println("Verified that unknown ID returns empty result.");
     }
+
+    @Test
+    void testFindAllWithFilters_shouldReturnOnlyMatchingAlbums() {
+        // Arrange: A few albums across artists, years and with/without a cover
+        saveAlbum("OK Computer", "Radiohead", "Alternative", "1997", "/albums/image/1.png");
+        saveAlbum("The Bends", "Radiohead", "Alternative", "1995", null);
+        saveAlbum("In Rainbows", "Radiohead", "Alternative", "2007", "/albums/image/3.png");
+        saveAlbum("Nevermind", "Nirvana", "Grunge", "1991", "/albums/image/4.png");
+
+        // Act: "Radiohead albums from the 90s, sorted by name"
+        AlbumFilter nineties = new AlbumFilter("Radiohead", null, "1990", "1999", null);
+        Page<Album> result = albumRepository.findAll(AlbumSpecifications.matching(nineties),
+                PageRequest.of(0, 10, Sort.by("name")));
+
+        // Assert: Only the two 90s Radiohead albums, in name order
+        assertEquals(List.of("OK Computer", "The Bends"), result.map(Album::getName).getContent());
+
+        // Act + Assert: has-photo narrows it further
+        AlbumFilter withCover = new AlbumFilter("Radiohead", null, "1990", "1999", true);
+        assertEquals(List.of("OK Computer"), albumRepository.findAll(AlbumSpecifications.matching(withCover))
+                .stream().map(Album::getName).toList());
+    }
+
+    @Test
+    void testUpdatePhotoMissing_shouldFlagAlbumAndBumpVersion() {
+        // Arrange: An album with a cover
+        Album album = new Album();
+        album.setName("Flagged Album");
+        album.setArtist("Artist");
+        album.setPhotoUrl("/albums/image/missing.png");
+        albumRepository.saveAndFlush(album);
+        Long versionBefore = album.getVersion();
+
+        // Act: Flag it the way PhotoStorageReconciler does (bulk update, bypassing the persistence context)
+        int updated = albumRepository.updatePhotoMissing(album.getId(), true, 1L);
+
+        // Assert: Flag set, and the version moved so version-checked caches see the change
+        assertEquals(1, updated);
+        AlbumRepository.AlbumPhoto photo = albumRepository.findPhotosByIdIn(List.of(album.getId())).get(0);
+        assertTrue(photo.isPhotoMissing());
+        Long versionAfter = albumRepository.findVersionsByIdIn(List.of(album.getId())).get(0).getVersion();
+        assertEquals(versionBefore + 1, versionAfter);
+    }
+
+    @Test
+    void testFindChanges_shouldUseChangeSeqIndex() {
+        // Arrange: Numbered albums, the way ChangeFeedService numbers writes
+        for (int i = 0; i < 200; i++) {
+            Album album = new Album();
+            album.setName("Album " + i);
+            album.setArtist("Artist");
+            album.setChangeSeq((long) i + 1);
+            albumRepository.save(album);
+        }
+        albumRepository.flush();
+        jdbcTemplate.execute("ANALYZE");
+
+        // Act: Run the change feed query, then ask H2 how it executes that exact SQL
+        SqlRecorder.start();
+        List<Album> changes = albumRepository.findChanges(150, 200, PageRequest.of(0, 10));
+        String select = SqlRecorder.stop().get(0);
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + select, String.class, 150, 200, 10));
+
+        // Assert: A range read on idx_albums_change_seq, in order, not a scan of the table
+        assertEquals(151L, changes.get(0).getChangeSeq());
+        assertFalse(plan.contains("tableScan"), "Change feed should not scan albums:\n" + plan);
+        assertTrue(plan.contains("IDX_ALBUMS_CHANGE_SEQ"), "Change feed should use idx_albums_change_seq:\n" + plan);
+    }
+
+    // Every filter + sort combination GET /albums accepts must be answerable from an index, not a full table
+    // scan, and so must the unfiltered listing in its default order
+    // H2 is only a stand-in for Postgres here, but both planners pick the same indexes for these simple
+    // equality + range predicates
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("indexedFilterCombinations")
+    void testFilteredQueries_shouldUseAnIndex(String description, AlbumFilter filter, List<String> sort,
+                                              List<String> expectedIndexes) {
+        // Arrange: Enough rows that a scan would be visibly worse than an index lookup
+        for (int i = 0; i < 200; i++) {
+            saveAlbum("Album " + i, "Artist " + (i % 40), "Genre " + (i % 10), String.valueOf(1950 + i % 70),
+                    i % 2 == 0 ? "/albums/image/" + i + ".png" : null);
+        }
+        jdbcTemplate.execute("ANALYZE");
+
+        // Act: Run the query GET /albums runs, then ask H2 how it executes that exact SQL
+        SqlRecorder.start();
+        albumRepository.findAll(AlbumSpecifications.matching(filter),
+                PageRequest.of(0, 10, AlbumSpecifications.orderedBy(filter, sort)));
+        String select = SqlRecorder.stop().stream()
+                .filter(sql -> sql.startsWith("select") && !sql.contains("count("))
+                .findFirst().orElseThrow();
+        String plan = explain(select, filter);
+
+        // Assert: The plan reads through one of the expected indexes and never scans the whole table
+        assertFalse(plan.contains("tableScan"), description + " should not scan albums:\n" + plan);
+        assertTrue(expectedIndexes.stream().anyMatch(index -> plan.contains(index.toUpperCase())),
+                description + " should use one of " + expectedIndexes + ":\n" + plan);
+    }
+
+    static Stream<Arguments> indexedFilterCombinations() {
+        List<String> artistIndex = List.of("idx_albums_artist_release_year");
+        List<String> genreIndex = List.of("idx_albums_genre_release_year");
+        List<String> yearIndexes = List.of("idx_albums_release_year", "idx_albums_artist_release_year", "idx_albums_genre_release_year");
+        List<String> defaultSort = List.of();
+        return Stream.of(
+                Arguments.of("no filter", AlbumFilter.none(), defaultSort, List.of("idx_albums_created_time")),
+                Arguments.of("artist", new AlbumFilter("Artist 1", null, null, null, null), defaultSort, artistIndex),
+                Arguments.of("genre", new AlbumFilter(null, "Genre 1", null, null, null), defaultSort, genreIndex),
+                Arguments.of("year range", new AlbumFilter(null, null, "1990", "1992", null), defaultSort, yearIndexes),
+                Arguments.of("artist + year range", new AlbumFilter("Artist 1", null, "1990", "1999", null), defaultSort, artistIndex),
+                Arguments.of("genre + year range", new AlbumFilter(null, "Genre 1", "1990", "1999", null), defaultSort, genreIndex),
+                Arguments.of("artist + has photo", new AlbumFilter("Artist 1", null, null, null, true), defaultSort, artistIndex),
+                Arguments.of("genre + has photo", new AlbumFilter(null, "Genre 1", null, null, true), defaultSort, genreIndex),
+                Arguments.of("year range + has photo", new AlbumFilter(null, null, "1990", "1992", true), defaultSort, yearIndexes),
+                Arguments.of("artist + genre + year range", new AlbumFilter("Artist 1", "Genre 1", "1990", "1999", null),
+                        defaultSort, List.of("idx_albums_artist_release_year", "idx_albums_genre_release_year")),
+                Arguments.of("artist sorted by -releaseYear", new AlbumFilter("Artist 1", null, null, null, null),
+                        List.of("-releaseYear"), artistIndex),
+                Arguments.of("genre + has photo sorted by name", new AlbumFilter(null, "Genre 1", null, null, true),
+                        List.of("name"), genreIndex),
+                Arguments.of("year range sorted by artist, -createdTime", new AlbumFilter(null, null, "1990", "1992", null),
+                        List.of("artist", "-createdTime"), yearIndexes)
+        );
+    }
+
+    // The combinations no index can serve are turned away before any SQL is sent
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("unindexedCombinations")
+    void testUnindexedQueries_shouldBeRejected(String description, AlbumFilter filter, List<String> sort) {
+        // Act + Assert: 400 instead of a scan and sort of the whole table
+        assertThrows(InvalidRequestException.class, () -> albumRepository.findAll(AlbumSpecifications.matching(filter),
+                PageRequest.of(0, 10, AlbumSpecifications.orderedBy(filter, sort))), description);
+    }
+
+    static Stream<Arguments> unindexedCombinations() {
+        return Stream.of(
+                Arguments.of("has photo only", new AlbumFilter(null, null, null, null, true), List.of()),
+                Arguments.of("has no photo only", new AlbumFilter(null, null, null, null, false), List.of()),
+                Arguments.of("sorted by name, no filter", AlbumFilter.none(), List.of("name")),
+                Arguments.of("sorted by -artist, no filter", AlbumFilter.none(), List.of("-artist")),
+                Arguments.of("sorted by genre, has photo only", new AlbumFilter(null, null, null, null, true), List.of("genre"))
+        );
+    }
+
+    // Runs EXPLAIN on the captured SQL with the filter's values bound in the order AlbumSpecifications adds them
+    private String explain(String sql, AlbumFilter filter) {
+        List<Object> parameters = new ArrayList<>();
+        Stream.of(filter.artist(), filter.genre(), filter.yearFrom(), filter.yearTo())
+                .filter(Objects::nonNull)
+                .forEach(parameters::add);
+        // Remaining placeholders are the paging values (offset/limit)
+        int placeholders = (int) sql.chars().filter(c -> c == '?').count();
+        while (parameters.size() < placeholders) {
+            parameters.add(10);
+        }
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, parameters.toArray()));
+    }
+
+    private void saveAlbum(String name, String artist, String genre, String releaseYear, String photoUrl) {
+        Album album = new Album();
+        album.setName(name);
+        album.setArtist(artist);
+        album.setGenre(genre);
+        album.setReleaseYear(releaseYear);
+        album.setPhotoUrl(photoUrl);
+        albumRepository.saveAndFlush(album);
+    }
 }
@@ -1,18 +1,33 @@
 package com.leelasowmya.topalbums.service;
 
+import com.leelasowmya.topalbums.cache.AlbumCache;
+import com.leelasowmya.topalbums.cache.CacheInvalidationBus;
+import com.leelasowmya.topalbums.cache.ImageCache;
+import com.leelasowmya.topalbums.changes.ChangeFeedService;
 import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.ingest.ImageIngest;
+import com.leelasowmya.topalbums.ingest.TestImages;
+import com.leelasowmya.topalbums.domain.AlbumFilter;
 import com.leelasowmya.topalbums.exception.AlbumNotFoundException;
+import com.leelasowmya.topalbums.exception.InvalidRequestException;
 import com.leelasowmya.topalbums.repository.AlbumRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -30,12 +45,24 @@ class AlbumServiceTest {
     @Mock
     private AlbumRepository albumRepository; // Mock dependency
 
-    @InjectMocks
     private AlbumService albumService; // Class under test
 
+    private ImageCache imageCache; // Real cache, small enough to exercise admission in tests
+
+    private AlbumCache albumCache;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this); // Initialize mocks
+        // Built by hand rather than with @InjectMocks: the service also needs a real (in-memory) MeterRegistry
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        imageCache = new ImageCache(DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), meterRegistry);
+        albumCache = new AlbumCache(100, meterRegistry);
+        // No database here, so the bus only invalidates this node's caches (NOTIFY stays switched off)
+        CacheInvalidationBus invalidationBus = new CacheInvalidationBus(albumCache, imageCache, mock(JdbcTemplate.class), meterRegistry);
+        ImageIngest imageIngest = new ImageIngest(DataSize.ofMegabytes(1), 10_000_000, 5000, meterRegistry);
+        albumService = new AlbumService(albumRepository, albumCache, imageCache, invalidationBus, imageIngest,
+                mock(ChangeFeedService.class), meterRegistry);
         //Why System.out.println instead of log.info()?
         // This is a unit test, and we're not inside a Spring-managed bean here.
         // No @Slf4j (yet), so System.out.println works fine
@@ -75,18 +102,54 @@ class AlbumServiceTest {
         List<Album> albumList = List.of(new Album(), new Album());
         Page<Album> mockPage = new PageImpl<>(albumList);
 
-        // Stub: When findAll() is called with any PageRequest, return the mock page we prepared
-        // 'any(PageRequest.class)' is used because we don't care about the exact paging object, just the interaction
-        when(albumRepository.findAll(any(PageRequest.class))).thenReturn(mockPage);
+        // Stub: When findAll() is called with any filter Specification and PageRequest, return the mock page we prepared
+        // 'any(...)' is used because we don't care about the exact filter or paging object, just the interaction
+        ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+        when(albumRepository.findAll(ArgumentMatchers.<Specification<Album>>any(), pageableCaptor.capture()))
+                .thenReturn(mockPage);
 
-        // Act: Call the real service method
-        Page<Album> result = albumService.getAllAlbums(0, 2);
+        // Act: Call the real service method without a filter or sort, the way a plain GET /albums does
+        Page<Album> result = albumService.getAllAlbums(AlbumFilter.none(), null, 0, 2);
 
-        // Assert: Verify output contains 2 albums as expected
+        // Assert: Verify output contains 2 albums as expected, in the default createdTime order (id breaks ties)
         assertEquals(2, result.getContent().size());
+        assertEquals(Sort.by("createdTime").and(Sort.by("id")), pageableCaptor.getValue().getSort());
 
         // Verify: Make sure the repository's findAll was called once
-        verify(albumRepository, times(1)).findAll(any(PageRequest.class));
+        verify(albumRepository, times(1)).findAll(ArgumentMatchers.<Specification<Album>>any(), any(Pageable.class));
+    }
+
+    @Test
+    void testGetAllAlbums_withSort_shouldBuildWhitelistedSortWithIdTieBreaker() {
+        // Arrange: Capture the Pageable the service builds
+        ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+        when(albumRepository.findAll(ArgumentMatchers.<Specification<Album>>any(), pageableCaptor.capture()))
+                .thenReturn(new PageImpl<>(List.of()));
+
+        // Act: Sort by artist ascending, then release year descending
+        albumService.getAllAlbums(new AlbumFilter("Artist", null, "1990", "1999", null), List.of("artist", "-releaseYear"), 0, 5);
+
+        // Assert: Requested orders come first, id is appended so pages don't overlap on ties
+        Sort expected = Sort.by(Sort.Order.asc("artist"), Sort.Order.desc("releaseYear"), Sort.Order.asc("id"));
+        assertEquals(expected, pageableCaptor.getValue().getSort());
+        assertEquals(5, pageableCaptor.getValue().getPageSize());
+    }
+
+    @Test
+    void testGetAllAlbums_withInvalidOrUnindexedQuery_shouldThrow() {
+        // Act + Assert: Only whitelisted fields can be sorted on and years must be 4 digits
+        assertThrows(InvalidRequestException.class,
+                () -> albumService.getAllAlbums(new AlbumFilter("Artist", null, null, null, null), List.of("photoUrl"), 0, 10));
+        assertThrows(InvalidRequestException.class,
+                () -> albumService.getAllAlbums(new AlbumFilter(null, null, "90s", null, null), null, 0, 10));
+        // Nor can hasPhoto or a sort be used without a filter an index can answer
+        assertThrows(InvalidRequestException.class,
+                () -> albumService.getAllAlbums(new AlbumFilter(null, null, null, null, true), null, 0, 10));
+        assertThrows(InvalidRequestException.class,
+                () -> albumService.getAllAlbums(AlbumFilter.none(), List.of("name"), 0, 10));
+
+        // Verify: Invalid requests never reach the database
+        verifyNoInteractions(albumRepository);
     }
 
     @Test
@@ -129,6 +192,37 @@ class AlbumServiceTest {
         verify(albumRepository, times(1)).findById(albumId);
     }
 
+    @Test
+    void testGetAlbum_shouldServeFromCacheUntilAlbumIsUpdated() {
+        // Arrange: An album in the "database"
+        String albumId = UUID.randomUUID().toString();
+        Album album = new Album();
+        album.setId(albumId);
+        album.setName("Cached Album");
+        album.setVersion(0L);
+        when(albumRepository.findById(albumId)).thenReturn(Optional.of(album));
+        when(albumRepository.save(any(Album.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act: Two reads - only the first should reach the repository
+        albumService.getAlbum(albumId);
+        Album second = albumService.getAlbum(albumId);
+
+        // Assert
+        assertEquals("Cached Album", second.getName());
+        verify(albumRepository, times(1)).findById(albumId);
+
+        // Act: An update invalidates the cached copy, so the next read goes back to the repository
+        Album changes = new Album();
+        changes.setName("Renamed Album");
+        albumService.updateAlbum(albumId, changes);
+        Album afterUpdate = albumService.getAlbum(albumId);
+
+        // Assert: Fresh data, and the cache never handed out the entity the update was modifying
+        assertEquals("Renamed Album", afterUpdate.getName());
+        assertEquals("Cached Album", second.getName());
+        verify(albumRepository, times(3)).findById(albumId); // first read, update, read after update
+    }
+
     @Test
     void testDeleteAlbum_shouldDeleteIfExists() {
         // Arrange: Create an album with a valid ID
@@ -157,7 +251,7 @@ class AlbumServiceTest {
         // Create a mock MultipartFile to simulate an uploaded image
         MultipartFile mockFile = mock(MultipartFile.class);
         when(mockFile.getOriginalFilename()).thenReturn("cover.jpg"); // Mock file name
-        when(mockFile.getInputStream()).thenReturn(new ByteArrayInputStream("dummy image content".getBytes())); // Simulate file content
+        when(mockFile.getInputStream()).thenReturn(new ByteArrayInputStream(TestImages.jpeg(600, 600))); // Simulate file content (a real JPEG header)
 
         // Create a mock Album object as if it's retrieved from DB
         Album existingAlbum = new Album();
@@ -199,5 +293,57 @@ class AlbumServiceTest {
         System.out.println("Photo uploaded, URL generated, and album updated successfully.");
     }
 
+    @Test
+    void testGetAlbumPhoto_shouldCachePopularImageAndEvictOnUpload() throws IOException {
+        // Arrange: Put an image on disk and an album that points at it
+        String albumId = UUID.randomUUID().toString();
+        String filename = albumId + ".png";
+        byte[] imageContent = "popular cover".getBytes();
+        Path imagePath = Paths.get(PHOTO_DIRECTORY).resolve(filename);
+        Files.createDirectories(imagePath.getParent());
+        Files.write(imagePath, imageContent);
+
+        Album album = new Album();
+        album.setId(albumId);
+        album.setPhotoUrl("http://localhost:8080" + PHOTO_PUBLIC_URL + filename);
+        when(albumRepository.findById(albumId)).thenReturn(Optional.of(album));
+        when(albumRepository.save(any(Album.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act: The first read is a one-off (streamed from the file, not cached); the second proves it's popular
+        AlbumPhoto first = albumService.getAlbumPhoto(filename);
+        assertEquals(0, imageCache.sizeInBytes(), "One-hit images should not be admitted");
+        read(albumService.getAlbumPhoto(filename));
+        AlbumPhoto cached = albumService.getAlbumPhoto(filename);
+
+        // Assert: Same bytes every time, and the image now sits in the cache off-heap
+        assertFalse(first.isCached());
+        assertArrayEquals(imageContent, read(first));
+        assertTrue(cached.isCached());
+        assertArrayEquals(imageContent, read(cached));
+        assertTrue(imageCache.get(filename).isDirect(), "Cached images should live in direct buffers");
+        assertEquals(imageContent.length, imageCache.sizeInBytes());
+
+        // Act: Replacing the cover must drop the old bytes from the cache
+        MultipartFile newCover = mock(MultipartFile.class);
+        when(newCover.getOriginalFilename()).thenReturn("new.png");
+        byte[] newCoverContent = TestImages.png(500, 500);
+        when(newCover.getInputStream()).thenReturn(new ByteArrayInputStream(newCoverContent));
+        albumService.uploadPhoto(albumId, newCover);
+
+        // Assert: Cache is empty again and the next read sees the new file
+        assertEquals(0, imageCache.sizeInBytes());
+        assertArrayEquals(newCoverContent, read(albumService.getAlbumPhoto(filename)));
+
+        // Clean up
+        Files.deleteIfExists(imagePath);
+    }
 
+    private static byte[] read(AlbumPhoto photo) throws IOException {
+        try (photo) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            photo.writeTo(out);
+            assertEquals(photo.size(), out.size());
+            return out.toByteArray();
+        }
+    }
 }
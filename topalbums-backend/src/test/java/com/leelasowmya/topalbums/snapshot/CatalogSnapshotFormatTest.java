@@ -0,0 +1,126 @@
+package com.leelasowmya.topalbums.snapshot;
+
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.exception.SnapshotFormatException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotFormatTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteThenRead_shouldRoundTripEveryField() throws IOException {
+        // Arrange: Albums covering nulls, non-ASCII text and a repeated artist/genre
+        Album full = Album.builder().id("a-1").name("Kid A").artist("Radiohead").genre("Alternative")
+                .releaseYear("2000").albumUrl("https://example.com/kid-a").photoUrl("http://localhost:8080/albums/image/a-1.png")
+                .createdTime(LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_456_000)).version(7L).photoMissing(true).changeSeq(42L).build();
+        Album sparse = Album.builder().id("a-2").name("Björk – Homogenic").artist("Björk").build();
+        Album sameArtist = Album.builder().id("a-3").name("Amnesiac").artist("Radiohead").genre("Alternative").version(0L)
+                .changeSeq(0L).build();
+        Path file = directory.resolve("catalog.snapshot");
+
+        // Act
+        try (CatalogSnapshotWriter writer = CatalogSnapshotWriter.open(file)) {
+            writer.write(full);
+            writer.write(sparse);
+            writer.write(sameArtist);
+            assertEquals(3, writer.finish());
+        }
+        CatalogSnapshotReader reader = CatalogSnapshotReader.open(file);
+        List<Album> read = new ArrayList<>();
+        reader.forEach(read::add);
+
+        // Assert: Same albums, same order, field for field
+        assertEquals(3, reader.albumCount());
+        assertEquals(3, read.size());
+        assertSameAlbum(full, read.get(0));
+        assertSameAlbum(sparse, read.get(1));
+        assertSameAlbum(sameArtist, read.get(2));
+    }
+
+    @Test
+    void testWrite_shouldStoreRepeatedArtistsAndGenresOnce() throws IOException {
+        // Arrange: 1000 albums sharing a handful of long artist/genre names
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshotWriter writer = CatalogSnapshotWriter.open(file)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.write(Album.builder().id(String.valueOf(i)).name("Album " + i)
+                        .artist("An Artist With A Fairly Long Name " + (i % 5))
+                        .genre("Progressive Experimental Rock " + (i % 3)).build());
+            }
+            writer.finish();
+        }
+
+        // Assert: Each record only carries small dictionary references, not the ~60 bytes of names
+        // (id + name + a few length bytes is ~22 bytes per album; with the names inline it'd be ~80)
+        long size = Files.size(file);
+        System.out.println("Snapshot of 1000 albums: " + size + " bytes");
+        assertTrue(size < 1000 * 30, "Expected artist/genre to be dictionary encoded, file is " + size + " bytes");
+    }
+
+    @Test
+    void testOpen_shouldRejectCorruptedOrTruncatedFiles() throws IOException {
+        // Arrange: A valid snapshot, then a copy with one flipped byte and a truncated copy
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshotWriter writer = CatalogSnapshotWriter.open(file)) {
+            writer.write(Album.builder().id("a-1").name("Kid A").artist("Radiohead").build());
+            writer.finish();
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] flipped = bytes.clone();
+        flipped[SnapshotFormat.HEADER_BYTES + 3] ^= 0x01;
+        Path corrupted = Files.write(directory.resolve("corrupted.snapshot"), flipped);
+        Path truncated = Files.write(directory.resolve("truncated.snapshot"), Arrays.copyOf(bytes, bytes.length - 5));
+
+        // Act + Assert
+        assertThrows(SnapshotFormatException.class, () -> CatalogSnapshotReader.open(corrupted));
+        assertThrows(SnapshotFormatException.class, () -> CatalogSnapshotReader.open(truncated));
+    }
+
+    @Test
+    void testClose_withoutFinish_shouldLeaveExistingSnapshotUntouched() throws IOException {
+        // Arrange: An existing snapshot with one album
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshotWriter writer = CatalogSnapshotWriter.open(file)) {
+            writer.write(Album.builder().id("a-1").name("Kid A").build());
+            writer.finish();
+        }
+
+        // Act: An export that fails half way (never calls finish)
+        try (CatalogSnapshotWriter writer = CatalogSnapshotWriter.open(file)) {
+            writer.write(Album.builder().id("a-2").name("Amnesiac").build());
+        }
+
+        // Assert: The old snapshot is still there and intact, and no temp files are left
+        assertEquals(1, CatalogSnapshotReader.open(file).albumCount());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private static void assertSameAlbum(Album expected, Album actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getArtist(), actual.getArtist());
+        assertEquals(expected.getGenre(), actual.getGenre());
+        assertEquals(expected.getReleaseYear(), actual.getReleaseYear());
+        assertEquals(expected.getAlbumUrl(), actual.getAlbumUrl());
+        assertEquals(expected.getPhotoUrl(), actual.getPhotoUrl());
+        assertEquals(expected.getCreatedTime(), actual.getCreatedTime());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getChangeSeq(), actual.getChangeSeq());
+        assertEquals(expected.isPhotoMissing(), actual.isPhotoMissing());
+    }
+}
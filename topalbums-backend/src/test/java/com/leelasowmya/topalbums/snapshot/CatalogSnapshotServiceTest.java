@@ -0,0 +1,159 @@
+package com.leelasowmya.topalbums.snapshot;
+
+import com.leelasowmya.topalbums.cache.AlbumCache;
+import com.leelasowmya.topalbums.cache.AlbumCacheVersionCheck;
+import com.leelasowmya.topalbums.domain.Album;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Export / restore / warm against a real (H2) albums table
+@DataJpaTest(properties = "app.snapshot.path=target/test-catalog.snapshot")
+@Import({CatalogSnapshotService.class, AlbumCache.class, AlbumCacheVersionCheck.class,
+        CatalogSnapshotServiceTest.Metrics.class})
+class CatalogSnapshotServiceTest {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private CatalogSnapshotService snapshotService;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private AlbumCache albumCache;
+
+    private long changeSeq;
+
+    @Test
+    void testExportThenRestore_shouldRecreateTheSameCatalog() throws IOException {
+        // Arrange: A small catalog
+        for (int i = 0; i < 25; i++) {
+            Album album = new Album();
+            album.setName("Album " + i);
+            album.setArtist("Artist " + (i % 4));
+            album.setGenre(i % 2 == 0 ? "Rock" : null);
+            album.setReleaseYear(String.valueOf(1980 + i));
+            album.setPhotoMissing(i % 5 == 0);
+            album.setChangeSeq(i % 3 == 0 ? null : (long) i);
+            albumRepository.save(album);
+        }
+        albumRepository.flush();
+        List<Album> original = sorted(albumRepository.findAll());
+        Path file = directory.resolve("catalog.snapshot");
+
+        // Act: Export, empty the table, restore
+        assertEquals(25, snapshotService.exportTo(file));
+        albumRepository.deleteAllInBatch();
+        assertTrue(snapshotService.isCatalogEmpty());
+        assertEquals(25, snapshotService.restore(file));
+
+        // Assert: Every row is back with the same values
+        List<Album> restored = sorted(albumRepository.findAll());
+        assertEquals(original.size(), restored.size());
+        for (int i = 0; i < original.size(); i++) {
+            assertEquals(original.get(i).getId(), restored.get(i).getId());
+            assertEquals(original.get(i).getName(), restored.get(i).getName());
+            assertEquals(original.get(i).getArtist(), restored.get(i).getArtist());
+            assertEquals(original.get(i).getGenre(), restored.get(i).getGenre());
+            assertEquals(original.get(i).getReleaseYear(), restored.get(i).getReleaseYear());
+            assertEquals(original.get(i).getVersion(), restored.get(i).getVersion());
+            assertEquals(original.get(i).isPhotoMissing(), restored.get(i).isPhotoMissing());
+            assertEquals(original.get(i).getChangeSeq(), restored.get(i).getChangeSeq());
+        }
+    }
+
+    @Test
+    void testRestore_shouldRefuseNonEmptyCatalog() throws IOException {
+        // Arrange: A snapshot, and a table that still has rows
+        Album album = new Album();
+        album.setName("Existing");
+        album.setArtist("Artist");
+        albumRepository.saveAndFlush(album);
+        Path file = directory.resolve("catalog.snapshot");
+        snapshotService.exportTo(file);
+
+        // Act + Assert
+        assertThrows(IllegalStateException.class, () -> snapshotService.restore(file));
+        assertEquals(1, albumRepository.count());
+    }
+
+    @Test
+    void testWarmCache_shouldCacheAlbumsButDropOnesChangedSinceTheSnapshot() throws IOException {
+        // Arrange: Snapshot three albums, then change one and delete another
+        Album kept = saveAlbum("Kept");
+        Album changed = saveAlbum("Changed");
+        Album deleted = saveAlbum("Deleted");
+        Path file = directory.resolve("catalog.snapshot");
+        snapshotService.exportTo(file);
+
+        changed.setName("Changed again");
+        albumRepository.saveAndFlush(changed);
+        albumRepository.delete(deleted);
+        albumRepository.flush();
+
+        // Act
+        int cached = snapshotService.warmCache(file);
+
+        // Assert: Only the untouched album survives the version check
+        assertEquals(1, cached);
+        assertNotNull(albumCache.get(kept.getId()));
+        assertNull(albumCache.get(changed.getId()));
+        assertNull(albumCache.get(deleted.getId()));
+    }
+
+    @Test
+    void testWarmCache_shouldSkipAlbumsWithoutChangeSeq() throws IOException {
+        // Arrange: One album numbered by the change feed, one from before it (as in an older snapshot)
+        Album numbered = saveAlbum("Numbered");
+        Album unnumbered = saveAlbum("Unnumbered");
+        unnumbered.setChangeSeq(null);
+        albumRepository.saveAndFlush(unnumbered);
+        Path file = directory.resolve("catalog.snapshot");
+        snapshotService.exportTo(file);
+
+        // Act
+        int cached = snapshotService.warmCache(file);
+
+        // Assert: The unnumbered copy isn't cached - it would serve changeSeq=null once the row gets a number
+        assertEquals(1, cached);
+        assertNotNull(albumCache.get(numbered.getId()));
+        assertNull(albumCache.get(unnumbered.getId()));
+    }
+
+    private Album saveAlbum(String name) {
+        Album album = new Album();
+        album.setName(name);
+        album.setArtist("Artist");
+        album.setChangeSeq(++changeSeq);
+        return albumRepository.saveAndFlush(album);
+    }
+
+    private static List<Album> sorted(List<Album> albums) {
+        return albums.stream().sorted(Comparator.comparing(Album::getId)).toList();
+    }
+}
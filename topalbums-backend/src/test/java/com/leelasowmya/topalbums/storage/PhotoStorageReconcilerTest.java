@@ -0,0 +1,244 @@
+package com.leelasowmya.topalbums.storage;
+
+import com.leelasowmya.topalbums.cache.CacheInvalidationBus;
+import com.leelasowmya.topalbums.changes.ChangeFeedService;
+import com.leelasowmya.topalbums.repository.AlbumRepository;
+import com.leelasowmya.topalbums.repository.AlbumRepository.AlbumPhoto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoStorageReconcilerTest {
+    private static final Instant NOW = Instant.parse("2025-06-01T12:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private AlbumRepository albumRepository;
+
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    @Mock
+    private ChangeFeedService changeFeed;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PhotoStorageReconciler reconciler;
+    private Instant now = NOW;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Batches of 2 so the tests exercise the walk being spread over several ticks
+        reconciler = new PhotoStorageReconciler(albumRepository, invalidationBus, changeFeed, transactionManager, directory, 2, Duration.ofHours(1),
+                new Clock() {
+                    @Override
+                    public ZoneOffset getZone() {
+                        return ZoneOffset.UTC;
+                    }
+
+                    @Override
+                    public Clock withZone(ZoneId zone) {
+                        return this;
+                    }
+
+                    @Override
+                    public Instant instant() {
+                        return now;
+                    }
+                }, meterRegistry);
+        reconciler.onApplicationReady();
+        lenient().when(albumRepository.count()).thenReturn(10L);
+    }
+
+    @Test
+    void testTick_shouldQuarantineOldUnreferencedFilesThenDeleteThem() throws IOException {
+        // Arrange: a.png is in use, b.jpg was replaced by b.png, c.png belongs to a deleted album,
+        // d.png is unreferenced but was written a minute ago (an upload still in flight)
+        writeFile("a.png", 100, Duration.ofDays(2));
+        writeFile("b.jpg", 200, Duration.ofDays(2));
+        writeFile("b.png", 300, Duration.ofDays(1));
+        writeFile("c.png", 400, Duration.ofDays(2));
+        writeFile("d.png", 500, Duration.ofMinutes(1));
+        when(albumRepository.findPhotosByIdIn(anyCollection())).thenReturn(List.of(
+                photo("a", "http://localhost:8080/albums/image/a.png", false),
+                photo("b", "http://localhost:8080/albums/image/b.png", false),
+                photo("d", "http://localhost:8080/albums/image/d.png", false)));
+
+        // Act: 5 files at 2 per tick - three ticks walk the whole directory
+        reconciler.tick();
+        reconciler.tick();
+        reconciler.tick();
+
+        // Assert: Only the old orphans were moved aside, nothing is deleted yet
+        assertTrue(Files.exists(directory.resolve("a.png")));
+        assertFalse(Files.exists(directory.resolve("b.jpg")));
+        assertTrue(Files.exists(directory.resolve("b.png")));
+        assertFalse(Files.exists(directory.resolve("c.png")));
+        assertTrue(Files.exists(directory.resolve("d.png")), "Files inside the grace period must be kept");
+        assertTrue(Files.exists(quarantined("b.jpg")));
+        assertTrue(Files.exists(quarantined("c.png")));
+        assertEquals(2, meterRegistry.counter("albums.photos.orphans.quarantined").count());
+        assertEquals(0, meterRegistry.counter("albums.photos.orphans.deleted").count());
+        verify(albumRepository, times(3)).findPhotosByIdIn(anyCollection()); // one query per tick, not per file
+
+        // Act: A grace period later - one tick for the (empty) missing pass, then the next orphan pass starts
+        now = NOW.plus(Duration.ofHours(2));
+        reconciler.tick();
+        reconciler.tick();
+
+        // Assert: The quarantined files are gone for good, and the freed bytes are reported
+        assertFalse(Files.exists(quarantined("b.jpg")));
+        assertFalse(Files.exists(quarantined("c.png")));
+        assertEquals(2, meterRegistry.counter("albums.photos.orphans.deleted").count());
+        assertEquals(600, meterRegistry.counter("albums.photos.reclaimed").count());
+    }
+
+    @Test
+    void testTick_shouldKeepFileReplacedAfterItWasListed() throws IOException {
+        // Arrange: x.png is old and looks orphaned (the album still says .jpg), but while the albums are
+        // being looked up the album re-uploads as .png - a new file moved over the same name
+        writeFile("x.png", 100, Duration.ofDays(2));
+        when(albumRepository.findPhotosByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Path upload = Files.write(directory.resolve("x.png.upload"), new byte[150]);
+            Files.move(upload, directory.resolve("x.png"), StandardCopyOption.REPLACE_EXISTING);
+            return List.of(photo("x", "http://localhost:8080/albums/image/x.jpg", false));
+        });
+
+        // Act
+        reconciler.tick();
+
+        // Assert: The new upload is left where it is
+        assertTrue(Files.exists(directory.resolve("x.png")));
+        assertEquals(150, Files.size(directory.resolve("x.png")));
+        assertEquals(0, meterRegistry.counter("albums.photos.orphans.quarantined").count());
+    }
+
+    @Test
+    void testTick_shouldRestoreQuarantinedFileThatIsStillReferenced() throws IOException {
+        // Arrange: Nothing in the directory itself, but an album points at a file sitting in quarantine
+        Files.createDirectories(directory.resolve(PhotoStorageReconciler.QUARANTINE_DIRECTORY));
+        Files.write(quarantined("kept.png"), new byte[10]);
+        when(albumRepository.findPhotosAfter(eq(""), any())).thenReturn(List.of(
+                photo("kept", "http://localhost:8080/albums/image/kept.png", false)));
+
+        // Act: Tick 1 walks the (empty) directory, tick 2 checks the albums
+        reconciler.tick();
+        reconciler.tick();
+
+        // Assert: Moved back rather than flagged missing
+        assertTrue(Files.exists(directory.resolve("kept.png")));
+        assertFalse(Files.exists(quarantined("kept.png")));
+        verify(albumRepository, never()).updatePhotoMissing(any(), anyBoolean(), anyLong());
+    }
+
+    @Test
+    void testTick_shouldFlagAlbumsWhoseFileIsMissingAndClearFixedOnes() throws IOException {
+        // Arrange: One file on disk (the orphan pass finishes in one tick), and two albums pointing at files
+        writeFile("present.png", 10, Duration.ofDays(1));
+        when(albumRepository.findPhotosByIdIn(anyCollection())).thenReturn(List.of(
+                photo("present", "http://localhost:8080/albums/image/present.png", true)));
+        when(albumRepository.findPhotosAfter(eq(""), any())).thenReturn(List.of(
+                photo("gone", "http://localhost:8080/albums/image/gone.png", false),
+                photo("present", "http://localhost:8080/albums/image/present.png", true)));
+
+        // Act: Tick 1 walks the directory, tick 2 checks the albums
+        reconciler.tick();
+        reconciler.tick();
+
+        // Assert: The missing file is flagged, the restored one un-flagged, and both evicted from caches
+        verify(albumRepository).updatePhotoMissing(eq("gone"), eq(true), anyLong());
+        verify(albumRepository).updatePhotoMissing(eq("present"), eq(false), anyLong());
+        verify(changeFeed, times(2)).nextChangeSeq(); // each change is numbered for the change feed
+        verify(invalidationBus).albumChanged("gone");
+        verify(invalidationBus).albumChanged("present");
+        assertEquals(1, meterRegistry.counter("albums.photos.missing.flagged").count());
+    }
+
+    @Test
+    void testTick_shouldNotTouchFilesWhileCatalogIsEmpty() throws IOException {
+        // Arrange: An old, unreferenced file - but no albums at all (e.g. a restore hasn't run yet)
+        writeFile("a.png", 100, Duration.ofDays(2));
+        when(albumRepository.count()).thenReturn(0L);
+
+        // Act
+        reconciler.tick();
+
+        // Assert
+        assertTrue(Files.exists(directory.resolve("a.png")));
+        verify(albumRepository, never()).findPhotosByIdIn(anyCollection());
+    }
+
+    @Test
+    void testTick_shouldWaitForApplicationReady() throws IOException {
+        // Arrange: A reconciler whose context hasn't finished starting
+        writeFile("a.png", 100, Duration.ofDays(2));
+        PhotoStorageReconciler starting = new PhotoStorageReconciler(albumRepository, invalidationBus, changeFeed,
+                transactionManager, directory, 2, Duration.ofHours(1), Clock.fixed(NOW, ZoneOffset.UTC), meterRegistry);
+
+        // Act
+        starting.tick();
+
+        // Assert
+        assertTrue(Files.exists(directory.resolve("a.png")));
+        verifyNoInteractions(albumRepository);
+    }
+
+    private Path quarantined(String name) {
+        return directory.resolve(PhotoStorageReconciler.QUARANTINE_DIRECTORY).resolve(name);
+    }
+
+    private void writeFile(String name, int size, Duration age) throws IOException {
+        Path file = Files.write(directory.resolve(name), new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.from(NOW.minus(age)));
+    }
+
+    private static AlbumPhoto photo(String id, String photoUrl, boolean missing) {
+        return new AlbumPhoto() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public String getPhotoUrl() {
+                return photoUrl;
+            }
+
+            @Override
+            public boolean isPhotoMissing() {
+                return missing;
+            }
+        };
+    }
+}